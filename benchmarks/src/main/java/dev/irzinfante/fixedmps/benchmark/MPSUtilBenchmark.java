@@ -0,0 +1,127 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.util.MPSUtil;
+
+/**
+ * Measures the generation of MPS files. Besides the
+ * throughput, the {@code megabytes} counter reports the
+ * output rate in MB/s
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class MPSUtilBenchmark {
+	
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int columns;
+	
+	@Param({"1", "0.01", "0.0001", "0.00001"})
+	public double density;
+	
+	@Param({"0", "0.5", "1"})
+	public double integers;
+	
+	private Problem problem;
+	
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Output {
+		
+		public double megabytes;
+		
+		private void count(long bytes) {
+			megabytes += bytes / 1e6;
+		}
+		
+	}
+	
+	/*
+	 * Counts the bytes written to it and discards them
+	 */
+	private static class CountingStream extends OutputStream {
+		
+		private long count;
+		
+		@Override
+		public void write(int b) {
+			count++;
+		}
+		
+		@Override
+		public void write(byte b[], int off, int len) {
+			count += len;
+		}
+		
+	}
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		
+		problem = new ProblemGenerator(columns, density, integers, 42).build();
+		problem.getColumnMatrix();
+	}
+	
+	@Benchmark
+	public String obtainMPSfile(Output output) {
+		
+		String MPS = MPSUtil.obtainMPSfile(problem);
+		output.count(MPS.length());
+		
+		return MPS;
+	}
+	
+	@Benchmark
+	public long writeMPS(Output output) throws IOException {
+		
+		CountingStream stream = new CountingStream();
+		MPSUtil.writeMPS(problem, stream);
+		output.count(stream.count);
+		
+		return stream.count;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.benchmark;
+
+import java.util.SplittableRandom;
+
+import dev.irzinfante.fixedmps.core.Constraint;
+import dev.irzinfante.fixedmps.core.Constraint.ConstraintBuilder;
+import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.Problem.ProblemBuilder;
+import dev.irzinfante.fixedmps.core.Variable;
+import dev.irzinfante.fixedmps.core.Variable.VarBuilder;
+
+/**
+ * Generates reproducible random problems. There is one
+ * constraint for every two variables, each with the nonzeros
+ * given by the density, but the number of constraints is
+ * reduced to keep the total nonzeros under {@link #MAX_NONZEROS}
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class ProblemGenerator {
+	
+	public static final long MAX_NONZEROS = 5_000_000;
+	
+	private Variable variables[];
+	private Constraint constraints[];
+	
+	/**
+	 * Generates the variables and constraints of a problem
+	 *
+	 * @param	columns	Number of variables
+	 * @param	density	Fraction of the variables in each constraint
+	 * @param	integers	Fraction of integer variables
+	 * @param	seed	Seed of the random generator
+	 * 
+	 * @since	2.1.0
+	 */
+	public ProblemGenerator(int columns, double density, double integers, long seed) {
+		
+		SplittableRandom random = new SplittableRandom(seed);
+		
+		variables = new Variable[columns];
+		for(int x = 0; x < columns; x++) {
+			VarBuilder builder = new VarBuilder(random.nextInt(4) == 0 ? 0 : random.nextDouble(-100, 100))
+				.upperBound(random.nextInt(2) == 0 ? Double.MAX_VALUE : random.nextInt(1, 1000));
+			if(random.nextDouble() < integers) {
+				builder.integer();
+			}
+			variables[x] = builder.build();
+		}
+		
+		int nonzeros = (int) Math.max(1, Math.min(columns, Math.round(density * columns)));
+		int rows = (int) Math.max(1, Math.min(columns / 2, MAX_NONZEROS / nonzeros));
+		constraints = new Constraint[rows];
+		for(int c = 0; c < rows; c++) {
+			int indices[] = new int[nonzeros];
+			double values[] = new double[nonzeros];
+			int start = random.nextInt(columns);
+			int stride = Math.max(1, columns / nonzeros);
+			for(int k = 0; k < nonzeros; k++) {
+				indices[k] = (start + k * stride) % columns;
+				values[k] = random.nextDouble(-10, 10);
+			}
+			ConstraintBuilder builder = new ConstraintBuilder(indices, values);
+			double free = random.nextDouble(-1000, 1000);
+			switch(random.nextInt(3)) {
+				case 0:
+					constraints[c] = builder.lessThan(free);
+					break;
+				case 1:
+					constraints[c] = builder.greaterThan(free);
+					break;
+				default:
+					constraints[c] = builder.equalTo(free);
+			}
+		}
+	}
+	
+	/**
+	 * Adds the generated constraints to a new builder and
+	 * builds the problem
+	 * 
+	 * @return	generated LP problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public Problem build() {
+		
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		for(Constraint constraint : constraints) {
+			builder.addConstraint(constraint);
+		}
+		
+		return builder.build();
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,199 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Array of primitive values outside of the heap, indexed by a
+ * long. It is made of direct or memory-mapped byte buffers of up to
+ * 1 GiB each, so an element never spans two of them as long as its
+ * size divides the size of a buffer
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+final class BufferArray {
+	
+	private static final int CHUNK_SHIFT = 30;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int MIN_CHUNK = 1 << 12;
+	
+	private ByteBuffer chunks[];
+	private long capacity;
+	
+	private BufferArray(ByteBuffer chunks[], long capacity) {
+		
+		this.chunks = chunks;
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Allocates an array in direct memory
+	 *
+	 * @param	bytes	Size of the array in bytes
+	 * @return	array filled with zeros
+	 * @since	2.1.0
+	 */
+	static BufferArray allocate(long bytes) {
+		
+		ByteBuffer chunks[] = new ByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+		for(int i = 0; i < chunks.length; i++) {
+			chunks[i] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_SIZE, bytes - ((long) i << CHUNK_SHIFT)))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		return new BufferArray(chunks, bytes);
+	}
+	
+	/**
+	 * Maps a region of a file as an array. The mapping stays
+	 * valid after the channel is closed
+	 *
+	 * @param	channel	Channel of the file
+	 * @param	mode	Mode in which the region is mapped
+	 * @param	position	Position of the region in the file
+	 * @param	bytes	Size of the region in bytes
+	 * @return	array backed by the file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	static BufferArray map(FileChannel channel, FileChannel.MapMode mode, long position, long bytes) throws IOException {
+		
+		ByteBuffer chunks[] = new ByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+		for(int i = 0; i < chunks.length; i++) {
+			long offset = (long) i << CHUNK_SHIFT;
+			chunks[i] = channel.map(mode, position + offset, Math.min(CHUNK_SIZE, bytes - offset))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		return new BufferArray(chunks, bytes);
+	}
+	
+	/**
+	 * Makes room for at least the given number of bytes,
+	 * keeping the content of the array. The last buffer
+	 * doubles its size until it reaches 1 GiB
+	 *
+	 * @param	bytes	Size needed in bytes
+	 * @since	2.1.0
+	 */
+	void ensureCapacity(long bytes) {
+		
+		while(capacity < bytes) {
+			int last = chunks.length - 1;
+			if(last < 0 || chunks[last].capacity() == CHUNK_SIZE) {
+				chunks = Arrays.copyOf(chunks, chunks.length + 1);
+				chunks[last + 1] = ByteBuffer.allocateDirect(MIN_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+				capacity += MIN_CHUNK;
+			} else {
+				long start = (long) last << CHUNK_SHIFT;
+				int size = (int) Math.min(CHUNK_SIZE, Math.max(2L * chunks[last].capacity(), bytes - start));
+				ByteBuffer chunk = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+				chunk.put(chunks[last].duplicate().clear());
+				capacity += size - chunks[last].capacity();
+				chunks[last] = chunk;
+			}
+		}
+	}
+	
+	/**
+	 * Writes the content of mapped buffers to the file
+	 *
+	 * @since	2.1.0
+	 */
+	void force() {
+		
+		for(ByteBuffer chunk : chunks()) {
+			if(chunk instanceof MappedByteBuffer) {
+				((MappedByteBuffer) chunk).force();
+			}
+		}
+	}
+	
+	/**
+	 * Drops the buffers of the array. The memory is given back
+	 * once they are no longer reachable, and any later access
+	 * to the array throws an IllegalStateException
+	 *
+	 * @since	2.1.0
+	 */
+	void release() {
+		
+		chunks = null;
+		capacity = 0;
+	}
+	
+	byte getByte(long index) {
+		return chunk(index).get(offset(index));
+	}
+	
+	void putByte(long index, byte value) {
+		chunk(index).put(offset(index), value);
+	}
+	
+	int getInt(long index) {
+		return chunk(index << 2).getInt(offset(index << 2));
+	}
+	
+	void putInt(long index, int value) {
+		chunk(index << 2).putInt(offset(index << 2), value);
+	}
+	
+	long getLong(long index) {
+		return chunk(index << 3).getLong(offset(index << 3));
+	}
+	
+	void putLong(long index, long value) {
+		chunk(index << 3).putLong(offset(index << 3), value);
+	}
+	
+	double getDouble(long index) {
+		return chunk(index << 3).getDouble(offset(index << 3));
+	}
+	
+	void putDouble(long index, double value) {
+		chunk(index << 3).putDouble(offset(index << 3), value);
+	}
+	
+	private ByteBuffer[] chunks() {
+		
+		if(chunks == null) {
+			throw new IllegalStateException("The off-heap storage has been released");
+		}
+		
+		return chunks;
+	}
+	
+	private ByteBuffer chunk(long position) {
+		return chunks()[(int) (position >>> CHUNK_SHIFT)];
+	}
+	
+	private static int offset(long position) {
+		return (int) (position & CHUNK_MASK);
+	}
+	
+}
\ No newline at end of file
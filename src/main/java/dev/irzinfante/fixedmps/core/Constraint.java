@@ -18,6 +18,8 @@
 
 package dev.irzinfante.fixedmps.core;
 
+import java.util.Arrays;
+
 import dev.irzinfante.fixedmps.constant.ConstraintType;
 
 /**
@@ -26,9 +28,12 @@ import dev.irzinfante.fixedmps.constant.ConstraintType;
  */
 public class Constraint {
 	
-	private double coeffs[];
+	private int indices[];
+	private double values[];
+	private int dimension;
 	private ConstraintType type;
 	private double free;
+	private double range;
 	
 	/**
 	 * @author      irzinfante iker@irzinfante.dev
@@ -36,7 +41,9 @@ public class Constraint {
 	 */
 	public static class ConstraintBuilder {
 		
-		private double coeffs[];
+		private int indices[];
+		private double values[];
+		private int dimension;
 		
 		/**
 		 * Initializes a Constraint object builder
@@ -50,7 +57,93 @@ public class Constraint {
 		 * @since	1.0.0
 		 */
 		public ConstraintBuilder (double ... coeffs) {
-			this.coeffs = coeffs;
+			
+			int nonzeros = 0;
+			for(int i = 0; i < coeffs.length; i++) {
+				if(coeffs[i] != 0) nonzeros++;
+			}
+			
+			this.indices = new int[nonzeros];
+			this.values = new double[nonzeros];
+			this.dimension = coeffs.length;
+			for(int i = 0, k = 0; i < coeffs.length; i++) {
+				if(coeffs[i] != 0) {
+					this.indices[k] = i;
+					this.values[k] = coeffs[i];
+					k++;
+				}
+			}
+		}
+		
+		/**
+		 * Initializes a Constraint object builder from
+		 * (variable index, coefficient) pairs. Only the
+		 * nonzero coefficients need to be given; repeated
+		 * indices are summed up and, as in the dense builder,
+		 * indices beyond the number of variables of the
+		 * problem are ignored
+		 *
+		 * @param	indices	Zero-based indices of the variables in
+		 * the same order they are added to the Problem object builder
+		 * @param	values	Coefficients of the indexed variables
+		 * 
+		 * @since	2.1.0
+		 */
+		public ConstraintBuilder (int indices[], double values[]) {
+			
+			if(indices.length != values.length) {
+				throw new IllegalArgumentException("There must be as many coefficients as indices");
+			}
+			
+			boolean sorted = true;
+			for(int k = 0; k < indices.length; k++) {
+				if(indices[k] < 0) {
+					throw new IllegalArgumentException("Variable indices must be non-negative");
+				}
+				if(k > 0 && indices[k] <= indices[k-1]) sorted = false;
+			}
+			
+			int order[] = new int[indices.length];
+			if(sorted) {
+				for(int k = 0; k < order.length; k++) order[k] = k;
+			} else {
+				long keys[] = new long[indices.length];
+				for(int k = 0; k < keys.length; k++) {
+					keys[k] = ((long) indices[k] << 32) | k;
+				}
+				Arrays.sort(keys);
+				for(int k = 0; k < keys.length; k++) {
+					order[k] = (int) keys[k];
+				}
+			}
+			
+			int merged[] = new int[indices.length];
+			double sums[] = new double[indices.length];
+			int nonzeros = 0;
+			for(int k = 0; k < order.length; k++) {
+				int index = indices[order[k]];
+				if(nonzeros > 0 && merged[nonzeros-1] == index) {
+					sums[nonzeros-1] += values[order[k]];
+				} else {
+					merged[nonzeros] = index;
+					sums[nonzeros] = values[order[k]];
+					nonzeros++;
+				}
+			}
+			
+			this.dimension = nonzeros == 0 ? 0 : merged[nonzeros-1] + 1;
+			
+			int size = 0;
+			for(int k = 0; k < nonzeros; k++) {
+				if(sums[k] != 0) {
+					merged[size] = merged[k];
+					sums[size] = sums[k];
+					size++;
+				}
+			}
+			
+			this.indices = Arrays.copyOf(merged, size);
+			this.values = Arrays.copyOf(sums, size);
 		}
 		
 		/**
@@ -63,13 +156,7 @@ public class Constraint {
 		 */
 		public Constraint lessThan(double free) {
 			
-			Constraint constraint = new Constraint();
-			
-			constraint.setCoeffs(this.coeffs);
-			constraint.setType(ConstraintType.L);
-			constraint.setFree(free);
-			
-			return constraint;
+			return create(this.indices, this.values, this.dimension, ConstraintType.L, free);
 		}
 		
 		/**
@@ -82,13 +169,7 @@ public class Constraint {
 		 */
 		public Constraint greaterThan(double free) {
 			
-			Constraint constraint = new Constraint();
-			
-			constraint.setCoeffs(this.coeffs);
-			constraint.setType(ConstraintType.G);
-			constraint.setFree(free);
-			
-			return constraint;
+			return create(this.indices, this.values, this.dimension, ConstraintType.G, free);
 		}
 		
 		/**
@@ -101,13 +182,29 @@ public class Constraint {
 		 */
 		public Constraint equalTo(double free) {
 			
-			Constraint constraint = new Constraint();
-			
-			constraint.setCoeffs(this.coeffs);
-			constraint.setType(ConstraintType.E);
-			constraint.setFree(free);
+			return create(this.indices, this.values, this.dimension, ConstraintType.E, free);
+		}
+		
+		/**
+		 * Creates a ranged constraint (lower ≤ · ≤ upper), written
+		 * once in the COLUMNS section and completed in the RANGES
+		 * section. It is an equation if both limits are equal, a
+		 * less-than or greater-than constraint with no range if the
+		 * lower or upper limit is infinite, and otherwise a greater-than
+		 * constraint with a range. Limits of magnitude
+		 * {@link Double#MAX_VALUE} or more are infinite
+		 *
+		 * @param	lower	The lower limit
+		 * @param	upper	The upper limit
+		 * @return	a ranged constraint
+		 * @throws	IllegalArgumentException	If the lower limit is greater than the upper
+		 * limit, or the distance between two finite limits overflows
+		 * 
+		 * @since	2.1.0
+		 */
+		public Constraint between(double lower, double upper) {
 			
-			return constraint;
+			return Constraint.between(this.indices, this.values, this.dimension, lower, upper);
 		}
 		
 	}
@@ -115,12 +212,99 @@ public class Constraint {
 	private Constraint() {
 	}
 	
+	/*
+	 * Maps the limits of a ranged constraint to its type, free term and range
+	 */
+	static Constraint between(int indices[], double values[], int dimension, double lower, double upper) {
+		
+		if(!(lower <= upper)) {
+			throw new IllegalArgumentException("The lower limit must not be greater than the upper limit");
+		}
+		
+		if(lower == upper) {
+			return create(indices, values, dimension, ConstraintType.E, lower);
+		} else if(lower <= -Double.MAX_VALUE) {
+			return create(indices, values, dimension, ConstraintType.L, upper);
+		} else if(upper >= Double.MAX_VALUE) {
+			return create(indices, values, dimension, ConstraintType.G, lower);
+		} else if(!Double.isFinite(upper - lower)) {
+			throw new IllegalArgumentException("The limits are too far apart to be written as a range");
+		}
+		
+		return create(indices, values, dimension, ConstraintType.G, lower, upper - lower);
+	}
+	
+	static Constraint create(int indices[], double values[], int dimension, ConstraintType type, double free) {
+		
+		return create(indices, values, dimension, type, free, 0);
+	}
+	
+	static Constraint create(int indices[], double values[], int dimension, ConstraintType type, double free, double range) {
+		
+		Constraint constraint = new Constraint();
+		
+		constraint.setIndices(indices);
+		constraint.setValues(values);
+		constraint.setDimension(dimension);
+		constraint.setType(type);
+		constraint.setFree(free);
+		constraint.setRange(range);
+		
+		return constraint;
+	}
+	
+	/**
+	 * Returns the coefficients of the constraint in dense form,
+	 * expanding the sparse storage into a new array
+	 * 
+	 * @return	coefficients of the variables in order
+	 * 
+	 * @since	1.0.0
+	 */
 	public double[] getCoeffs() {
+		
+		double coeffs[] = new double[dimension];
+		for(int k = 0; k < indices.length; k++) {
+			coeffs[indices[k]] = values[k];
+		}
+		
 		return coeffs;
 	}
 	
-	private void setCoeffs(double coeffs[]) {
-		this.coeffs = coeffs;
+	/**
+	 * Returns the indices of the variables with nonzero
+	 * coefficient, in increasing order
+	 * 
+	 * @return	indices of the nonzero coefficients
+	 * 
+	 * @since	2.1.0
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+	
+	private void setIndices(int indices[]) {
+		this.indices = indices;
+	}
+	
+	/**
+	 * Returns the nonzero coefficients, in the same order
+	 * as their indices
+	 * 
+	 * @return	nonzero coefficients
+	 * 
+	 * @since	2.1.0
+	 */
+	public double[] getValues() {
+		return values;
+	}
+	
+	private void setValues(double values[]) {
+		this.values = values;
+	}
+	
+	private void setDimension(int dimension) {
+		this.dimension = dimension;
 	}
 	
 	public ConstraintType getType() {
@@ -139,4 +323,24 @@ public class Constraint {
 		this.free = free;
 	}
 	
+	/**
+	 * Returns the range of the constraint, with the meaning of the
+	 * RANGES section of the MPS format: the activity is between
+	 * {@code free - |range|} and {@code free} for less-than constraints,
+	 * between {@code free} and {@code free + |range|} for greater-than
+	 * constraints, and between {@code free} and {@code free + range}
+	 * for equations. Zero means no range
+	 * 
+	 * @return	range of the constraint
+	 * 
+	 * @since	2.1.0
+	 */
+	public double getRange() {
+		return range;
+	}
+	
+	private void setRange(double range) {
+		this.range = range;
+	}
+	
 }
\ No newline at end of file
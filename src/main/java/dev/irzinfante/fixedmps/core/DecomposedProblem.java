@@ -0,0 +1,269 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+import java.util.BitSet;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+import dev.irzinfante.fixedmps.core.Problem.ProblemBuilder;
+
+/**
+ * Split of a problem into independent blocks, with no variable
+ * shared by constraints of different blocks, so that each of them
+ * can be solved on its own. The blocks are the connected components
+ * of the graph of variables and constraints, found with a union-find
+ * structure in time proportional to the number of nonzeros. They are
+ * ordered by their first variable, and keep the order of the original
+ * variables and constraints. Variables in no constraint and constraints
+ * with no nonzeros are gathered into one more block, placed last
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class DecomposedProblem {
+	
+	private Problem problems[];
+	private int rowMappings[][];
+	private int columnMappings[][];
+	private int numColumns;
+	
+	private DecomposedProblem() {
+	}
+	
+	/**
+	 * Decomposes a problem, which is left unchanged
+	 *
+	 * @param	original	The LP problem to split
+	 * @return	independent problems and mappings to the original one
+	 * 
+	 * @since	2.1.0
+	 */
+	public static DecomposedProblem decompose(Problem original) {
+		
+		SparseMatrix matrix = original.getMatrix();
+		int starts[] = matrix.getStarts();
+		int indices[] = matrix.getIndices();
+		double values[] = matrix.getValues();
+		VariableTable variables = original.getVariables();
+		int numRows = original.getRowTypes().length;
+		int numColumns = variables.size();
+		
+		int parent[] = new int[numColumns];
+		for(int x = 0; x < numColumns; x++) {
+			parent[x] = x;
+		}
+		boolean used[] = new boolean[numColumns];
+		for(int c = 0; c < numRows; c++) {
+			if(starts[c] < starts[c+1]) {
+				int first = find(parent, indices[starts[c]]);
+				used[indices[starts[c]]] = true;
+				for(int k = starts[c] + 1; k < starts[c+1]; k++) {
+					used[indices[k]] = true;
+					int root = find(parent, indices[k]);
+					// The smaller root is kept, so each root is the first variable of its block
+					if(root < first) {
+						parent[first] = root;
+						first = root;
+					} else if(root > first) {
+						parent[root] = first;
+					}
+				}
+			}
+		}
+		
+		// Blocks are numbered in the order of their roots, with the leftovers last
+		int block[] = new int[numColumns];
+		int numBlocks = 0;
+		for(int x = 0; x < numColumns; x++) {
+			if(used[x] && find(parent, x) == x) {
+				block[x] = numBlocks++;
+			}
+		}
+		int leftovers = numBlocks;
+		boolean hasLeftovers = false;
+		int columnCounts[] = new int[numBlocks + 1];
+		for(int x = 0; x < numColumns; x++) {
+			block[x] = used[x] ? block[find(parent, x)] : leftovers;
+			hasLeftovers |= !used[x];
+			columnCounts[block[x]]++;
+		}
+		int rowBlock[] = new int[numRows];
+		int rowCounts[] = new int[numBlocks + 1];
+		int nonzeroCounts[] = new int[numBlocks + 1];
+		for(int c = 0; c < numRows; c++) {
+			rowBlock[c] = starts[c] < starts[c+1] ? block[indices[starts[c]]] : leftovers;
+			hasLeftovers |= starts[c] == starts[c+1];
+			rowCounts[rowBlock[c]]++;
+			nonzeroCounts[rowBlock[c]] += starts[c+1] - starts[c];
+		}
+		if(hasLeftovers) {
+			numBlocks++;
+		}
+		
+		int columnMappings[][] = new int[numBlocks][];
+		int newIndex[] = new int[numColumns];
+		for(int b = 0; b < numBlocks; b++) {
+			columnMappings[b] = new int[columnCounts[b]];
+			columnCounts[b] = 0;
+		}
+		for(int x = 0; x < numColumns; x++) {
+			newIndex[x] = columnCounts[block[x]]++;
+			columnMappings[block[x]][newIndex[x]] = x;
+		}
+		
+		int rowMappings[][] = new int[numBlocks][];
+		int blockStarts[][] = new int[numBlocks][];
+		int blockIndices[][] = new int[numBlocks][];
+		double blockValues[][] = new double[numBlocks][];
+		ConstraintType blockTypes[][] = new ConstraintType[numBlocks][];
+		double blockFree[][] = new double[numBlocks][];
+		for(int b = 0; b < numBlocks; b++) {
+			rowMappings[b] = new int[rowCounts[b]];
+			blockStarts[b] = new int[rowCounts[b] + 1];
+			blockIndices[b] = new int[nonzeroCounts[b]];
+			blockValues[b] = new double[nonzeroCounts[b]];
+			blockTypes[b] = new ConstraintType[rowCounts[b]];
+			blockFree[b] = new double[rowCounts[b]];
+			rowCounts[b] = 0;
+		}
+		for(int c = 0; c < numRows; c++) {
+			int b = rowBlock[c];
+			int row = rowCounts[b]++;
+			int position = blockStarts[b][row];
+			for(int k = starts[c]; k < starts[c+1]; k++, position++) {
+				blockIndices[b][position] = newIndex[indices[k]];
+				blockValues[b][position] = values[k];
+			}
+			blockStarts[b][row + 1] = position;
+			blockTypes[b][row] = original.getRowTypes()[c];
+			blockFree[b][row] = original.getFreeTerms()[c];
+			rowMappings[b][row] = c;
+		}
+		
+		Problem problems[] = new Problem[numBlocks];
+		for(int b = 0; b < numBlocks; b++) {
+			int columns[] = columnMappings[b];
+			double objCoeffs[] = new double[columns.length];
+			double lowerBounds[] = new double[columns.length];
+			double upperBounds[] = new double[columns.length];
+			BitSet integers = new BitSet(columns.length);
+			for(int y = 0; y < columns.length; y++) {
+				objCoeffs[y] = variables.getObjCoeffs()[columns[y]];
+				lowerBounds[y] = variables.getLowerBounds()[columns[y]];
+				upperBounds[y] = variables.getUpperBounds()[columns[y]];
+				integers.set(y, variables.isInteger(columns[y]));
+			}
+			ProblemBuilder builder = new ProblemBuilder(new VariableTable(objCoeffs, lowerBounds, upperBounds, integers))
+				.addConstraintsCSR(blockStarts[b], blockIndices[b], blockValues[b], blockTypes[b], blockFree[b], true);
+			for(int row = 0; row < rowMappings[b].length; row++) {
+				if(original.getRanges()[rowMappings[b][row]] != 0) {
+					builder.setRange(row, original.getRanges()[rowMappings[b][row]]);
+				}
+			}
+			problems[b] = builder.build();
+		}
+		
+		DecomposedProblem decomposed = new DecomposedProblem();
+		decomposed.problems = problems;
+		decomposed.rowMappings = rowMappings;
+		decomposed.columnMappings = columnMappings;
+		decomposed.numColumns = numColumns;
+		
+		return decomposed;
+	}
+	
+	/**
+	 * Returns the independent problems, one for each block
+	 * 
+	 * @return	LP problems
+	 * 
+	 * @since	2.1.0
+	 */
+	public Problem[] getProblems() {
+		return problems;
+	}
+	
+	/**
+	 * Returns the index in the original problem of each
+	 * constraint of each block
+	 * 
+	 * @return	original indices of the constraints, by block
+	 * 
+	 * @since	2.1.0
+	 */
+	public int[][] getRowMappings() {
+		return rowMappings;
+	}
+	
+	/**
+	 * Returns the index in the original problem of each
+	 * variable of each block
+	 * 
+	 * @return	original indices of the variables, by block
+	 * 
+	 * @since	2.1.0
+	 */
+	public int[][] getColumnMappings() {
+		return columnMappings;
+	}
+	
+	/**
+	 * Returns the values of the variables of the original problem
+	 * from the values of the variables of every block. The objective
+	 * value of the original problem is the sum of those of the blocks
+	 * 
+	 * @param	solutions	Values of the variables of each block
+	 * @return	values of the variables of the original problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public double[] recompose(double solutions[][]) {
+		
+		if(solutions.length != problems.length) {
+			throw new IllegalArgumentException("There must be a solution for each block");
+		}
+		
+		double values[] = new double[numColumns];
+		for(int b = 0; b < problems.length; b++) {
+			if(solutions[b].length != columnMappings[b].length) {
+				throw new IllegalArgumentException("There must be a value for each variable of the block");
+			}
+			for(int y = 0; y < solutions[b].length; y++) {
+				values[columnMappings[b][y]] = solutions[b][y];
+			}
+		}
+		
+		return values;
+	}
+	
+	/*
+	 * Finds the root of a variable, halving the path on the way
+	 */
+	private static int find(int parent[], int x) {
+		
+		while(parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		
+		return x;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,279 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+import java.util.Arrays;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+
+/**
+ * Sum of terms of variables, with a constant, from which
+ * constraints are created. The variables are given by the
+ * zero-based indices returned by {@link Problem.ProblemBuilder#addVariable(Variable)},
+ * or by their position in the Problem object builder. The terms are
+ * accumulated in an open addressing hash map of primitives, so that
+ * the terms of a variable added several times are summed up
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class LinearExpression {
+	
+	private int keys[]; // Index plus one, zero for empty slots
+	private double values[];
+	private int size;
+	private int shift;
+	private double constant;
+	
+	/**
+	 * Initializes an empty expression
+	 * 
+	 * @since	2.1.0
+	 */
+	public LinearExpression() {
+		
+		this.keys = new int[16];
+		this.values = new double[16];
+		this.size = 0;
+		this.shift = 32 - 4;
+		this.constant = 0;
+	}
+	
+	/**
+	 * Adds a term to the expression
+	 *
+	 * @param	variable	Zero-based index of the variable
+	 * @param	coeff	Coefficient of the variable
+	 * @return	LinearExpression with the added term
+	 * 
+	 * @since	2.1.0
+	 */
+	public LinearExpression add(int variable, double coeff) {
+		
+		if(variable < 0) {
+			throw new IllegalArgumentException("Variable indices must be non-negative");
+		}
+		
+		int key = variable + 1;
+		int slot = slot(key);
+		while(keys[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		if(keys[slot] == 0) {
+			keys[slot] = key;
+			values[slot] = coeff;
+			if(2 * ++size > keys.length) {
+				grow();
+			}
+		} else {
+			values[slot] += coeff;
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Adds all the terms and the constant of another
+	 * expression, multiplied by a factor
+	 *
+	 * @param	expression	Expression to add
+	 * @param	factor	Factor of the expression
+	 * @return	LinearExpression with the added terms
+	 * 
+	 * @since	2.1.0
+	 */
+	public LinearExpression add(LinearExpression expression, double factor) {
+		
+		int otherKeys[] = expression.keys;
+		double otherValues[] = expression.values;
+		for(int slot = 0; slot < otherKeys.length; slot++) {
+			if(otherKeys[slot] != 0) {
+				add(otherKeys[slot] - 1, factor * otherValues[slot]);
+			}
+		}
+		constant += factor * expression.constant;
+		
+		return this;
+	}
+	
+	/**
+	 * Adds a constant to the expression, which is moved
+	 * to the free term of the constraints
+	 *
+	 * @param	constant	Value to add
+	 * @return	LinearExpression with the added constant
+	 * 
+	 * @since	2.1.0
+	 */
+	public LinearExpression addConstant(double constant) {
+		
+		this.constant += constant;
+		
+		return this;
+	}
+	
+	/**
+	 * Removes all the terms and the constant, keeping the
+	 * memory of the expression to build another one
+	 *
+	 * @return	empty LinearExpression
+	 * 
+	 * @since	2.1.0
+	 */
+	public LinearExpression clear() {
+		
+		Arrays.fill(keys, 0);
+		size = 0;
+		constant = 0;
+		
+		return this;
+	}
+	
+	/**
+	 * Returns the number of variables in the expression,
+	 * including those whose terms have cancelled out
+	 * 
+	 * @return	number of variables
+	 * 
+	 * @since	2.1.0
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public double getConstant() {
+		return constant;
+	}
+	
+	/**
+	 * Creates an inequation constraint (expression ≤ k). The
+	 * expression can still be used afterwards
+	 *
+	 * @param	free	Value of the free term
+	 * @return	constraint of a LP problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public Constraint lessThan(double free) {
+		
+		return constraint(ConstraintType.L, free, 0);
+	}
+	
+	/**
+	 * Creates an inequation constraint (expression ≥ k). The
+	 * expression can still be used afterwards
+	 *
+	 * @param	free	Value of the free term
+	 * @return	constraint of a LP problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public Constraint greaterThan(double free) {
+		
+		return constraint(ConstraintType.G, free, 0);
+	}
+	
+	/**
+	 * Creates an equation constraint (expression = k). The
+	 * expression can still be used afterwards
+	 *
+	 * @param	free	Value of the free term
+	 * @return	constraint of a LP problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public Constraint equalTo(double free) {
+		
+		return constraint(ConstraintType.E, free, 0);
+	}
+	
+	/**
+	 * Creates a ranged constraint (lower ≤ expression ≤ upper),
+	 * with the same types as {@link Constraint.ConstraintBuilder#between(double, double)}.
+	 * The expression can still be used afterwards
+	 *
+	 * @param	lower	The lower limit
+	 * @param	upper	The upper limit
+	 * @return	constraint of a LP problem
+	 * @throws	IllegalArgumentException	If the lower limit is greater than the upper
+	 * limit, or the distance between two finite limits overflows
+	 * 
+	 * @since	2.1.0
+	 */
+	public Constraint between(double lower, double upper) {
+		
+		Constraint limits = Constraint.between(null, null, 0, lower, upper);
+		
+		return constraint(limits.getType(), limits.getFree(), limits.getRange());
+	}
+	
+	/*
+	 * Sorts the nonzero terms by variable, packing the index and the
+	 * slot of each one in a long
+	 */
+	private Constraint constraint(ConstraintType type, double free, double range) {
+		
+		long order[] = new long[size];
+		int nonzeros = 0, dimension = 0;
+		for(int slot = 0; slot < keys.length; slot++) {
+			if(keys[slot] != 0) {
+				dimension = Math.max(dimension, keys[slot]);
+				if(values[slot] != 0) {
+					order[nonzeros++] = ((long) (keys[slot] - 1) << 32) | slot;
+				}
+			}
+		}
+		Arrays.sort(order, 0, nonzeros);
+		
+		int indices[] = new int[nonzeros];
+		double coeffs[] = new double[nonzeros];
+		for(int k = 0; k < nonzeros; k++) {
+			indices[k] = (int) (order[k] >>> 32);
+			coeffs[k] = values[(int) order[k]];
+		}
+		
+		return Constraint.create(indices, coeffs, dimension, type, free - constant, range);
+	}
+	
+	private int slot(int key) {
+		return (key * 0x9E3779B9) >>> shift;
+	}
+	
+	private void grow() {
+		
+		int oldKeys[] = keys;
+		double oldValues[] = values;
+		
+		keys = new int[2 * oldKeys.length];
+		values = new double[2 * oldValues.length];
+		shift--;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != 0) {
+				int slot = slot(oldKeys[i]);
+				while(keys[slot] != 0) {
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+}
\ No newline at end of file
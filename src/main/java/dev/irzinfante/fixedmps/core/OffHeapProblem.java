@@ -0,0 +1,612 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+
+/**
+ * LP problem with the constraint matrix stored outside of the
+ * heap, in column-major compressed sparse storage, so that its
+ * nonzeros are not traced by the garbage collector. The matrix is
+ * kept in direct memory, or in a memory-mapped file that can be
+ * reopened with {@link #open(Path)} without building the problem
+ * again. The variables, types, free terms and ranges of the
+ * constraints are held in the heap. The storage is released on {@link #close()},
+ * and freed when the garbage collector reclaims it
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class OffHeapProblem implements Closeable {
+	
+	private static final long MAGIC = 0x5350_4d44_4558_4946L; // "FIXEDMPS"
+	private static final int VERSION = 2; // Version 1 has no ranges
+	private static final int HEADER_SIZE = 32;
+	private static final int BLOCK_SIZE = 1 << 22;
+	
+	private VariableTable variables;
+	private ConstraintType rowTypes[];
+	private double freeTerms[];
+	private double ranges[];
+	private long nonzeros;
+	private BufferArray starts;
+	private BufferArray rows;
+	private BufferArray values;
+	
+	/**
+	 * @author      irzinfante iker@irzinfante.dev
+	 * @since       2.1.0
+	 */
+	public static class OffHeapProblemBuilder {
+		
+		private VariableTable variables;
+		private int numVar;
+		
+		private int numRows;
+		private long starts[];
+		private ConstraintType rowTypes[];
+		private double freeTerms[];
+		private double ranges[];
+		private long counts[];
+		private BufferArray indices;
+		private BufferArray values;
+		
+		/**
+		 * Initializes an OffHeapProblem object builder
+		 *
+		 * @param	variables	Variables of the problem
+		 * 
+		 * @since	2.1.0
+		 */
+		public OffHeapProblemBuilder(Variable ... variables) {
+			
+			this(VariableTable.of(variables));
+		}
+		
+		/**
+		 * Initializes an OffHeapProblem object builder from the
+		 * variables in columnar storage
+		 *
+		 * @param	variables	Variables of the problem
+		 * 
+		 * @since	2.1.0
+		 */
+		public OffHeapProblemBuilder(VariableTable variables) {
+			
+			this.variables = variables;
+			this.numVar = variables.size();
+			
+			this.numRows = 0;
+			this.starts = new long[17];
+			this.rowTypes = new ConstraintType[16];
+			this.freeTerms = new double[16];
+			this.ranges = new double[16];
+			this.counts = new long[numVar];
+			this.indices = BufferArray.allocate(0);
+			this.values = BufferArray.allocate(0);
+		}
+		
+		/**
+		 * Adds a constraint to the problem. Its nonzero coefficients
+		 * are copied to direct memory
+		 *
+		 * @param	constraint	Constraint to add to the problem
+		 * @return	OffHeapProblemBuilder with the added constraint
+		 * 
+		 * @since	2.1.0
+		 */
+		public OffHeapProblemBuilder addConstraint(Constraint constraint) {
+			
+			long nonzeros = starts[numRows];
+			int rowIndices[] = constraint.getIndices();
+			double rowValues[] = constraint.getValues();
+			
+			if(numRows == rowTypes.length) {
+				int capacity = 2 * numRows;
+				starts = Arrays.copyOf(starts, capacity + 1);
+				rowTypes = Arrays.copyOf(rowTypes, capacity);
+				freeTerms = Arrays.copyOf(freeTerms, capacity);
+				ranges = Arrays.copyOf(ranges, capacity);
+			}
+			indices.ensureCapacity(Integer.BYTES * (nonzeros + rowIndices.length));
+			values.ensureCapacity(Double.BYTES * (nonzeros + rowIndices.length));
+			
+			for(int k = 0; k < rowIndices.length && rowIndices[k] < numVar; k++) {
+				indices.putInt(nonzeros, rowIndices[k]);
+				values.putDouble(nonzeros, rowValues[k]);
+				counts[rowIndices[k]]++;
+				nonzeros++;
+			}
+			
+			rowTypes[numRows] = constraint.getType();
+			freeTerms[numRows] = constraint.getFree();
+			ranges[numRows] = constraint.getRange();
+			starts[++numRows] = nonzeros;
+			
+			return this;
+		}
+		
+		/**
+		 * Returns the created OffHeapProblem object, with the
+		 * matrix in direct memory. The builder must not be
+		 * used afterwards
+		 * 
+		 * @return	LP problem
+		 * 
+		 * @since	2.1.0
+		 */
+		public OffHeapProblem build() {
+			
+			long nonzeros = starts[numRows];
+			
+			OffHeapProblem lp = new OffHeapProblem(variables, Arrays.copyOf(rowTypes, numRows), Arrays.copyOf(freeTerms, numRows),
+				Arrays.copyOf(ranges, numRows), nonzeros, BufferArray.allocate(Long.BYTES * (numVar + 1L)),
+				BufferArray.allocate(Integer.BYTES * nonzeros), BufferArray.allocate(Double.BYTES * nonzeros));
+			transpose(lp);
+			
+			return lp;
+		}
+		
+		/**
+		 * Returns the created OffHeapProblem object, with the
+		 * whole problem stored in a memory-mapped file, created
+		 * or truncated. The builder must not be used afterwards
+		 * 
+		 * @param	path	Path of the file
+		 * @return	LP problem
+		 * @throws	IOException	If an I/O error occurs
+		 * 
+		 * @since	2.1.0
+		 */
+		public OffHeapProblem build(Path path) throws IOException {
+			
+			long nonzeros = starts[numRows];
+			long layout[] = layout(numVar, numRows, nonzeros, VERSION);
+			
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+					.putLong(MAGIC).putInt(VERSION).putInt(numVar).putInt(numRows).putInt(0).putLong(nonzeros);
+				channel.write(header.flip(), 0);
+				
+				BufferArray objCoeffs = map(channel, layout, 0);
+				BufferArray lowerBounds = map(channel, layout, 1);
+				BufferArray upperBounds = map(channel, layout, 2);
+				BufferArray integers = map(channel, layout, 3);
+				for(int x = 0; x < numVar; x++) {
+					objCoeffs.putDouble(x, variables.getObjCoeffs()[x]);
+					lowerBounds.putDouble(x, variables.getLowerBounds()[x]);
+					upperBounds.putDouble(x, variables.getUpperBounds()[x]);
+					integers.putByte(x, (byte) (variables.isInteger(x) ? 1 : 0));
+				}
+				BufferArray types = map(channel, layout, 4);
+				BufferArray free = map(channel, layout, 5);
+				BufferArray rangeSection = map(channel, layout, 9);
+				for(int c = 0; c < numRows; c++) {
+					types.putByte(c, (byte) rowTypes[c].ordinal());
+					free.putDouble(c, freeTerms[c]);
+					rangeSection.putDouble(c, ranges[c]);
+				}
+				for(BufferArray section : new BufferArray[] {objCoeffs, lowerBounds, upperBounds, integers, types, free, rangeSection}) {
+					section.force();
+					section.release();
+				}
+				
+				OffHeapProblem lp = new OffHeapProblem(variables, Arrays.copyOf(rowTypes, numRows), Arrays.copyOf(freeTerms, numRows),
+					Arrays.copyOf(ranges, numRows), nonzeros, map(channel, layout, 6), map(channel, layout, 7), map(channel, layout, 8));
+				transpose(lp);
+				lp.starts.force();
+				lp.rows.force();
+				lp.values.force();
+				
+				return lp;
+			}
+		}
+		
+		/*
+		 * Moves the nonzeros of the rows to the column-major storage of the problem
+		 */
+		private void transpose(OffHeapProblem lp) {
+			
+			long next[] = new long[numVar];
+			for(int x = 0; x < numVar; x++) {
+				lp.starts.putLong(x, next[x]);
+				if(x + 1 < numVar) next[x + 1] = next[x] + counts[x];
+			}
+			lp.starts.putLong(numVar, lp.nonzeros);
+			
+			for(int c = 0; c < numRows; c++) {
+				for(long k = starts[c]; k < starts[c+1]; k++) {
+					long position = next[indices.getInt(k)]++;
+					lp.rows.putInt(position, c);
+					lp.values.putDouble(position, values.getDouble(k));
+				}
+			}
+			
+			indices.release();
+			values.release();
+		}
+		
+	}
+	
+	private OffHeapProblem(VariableTable variables, ConstraintType rowTypes[], double freeTerms[], double ranges[],
+			long nonzeros, BufferArray starts, BufferArray rows, BufferArray values) {
+		
+		this.variables = variables;
+		this.rowTypes = rowTypes;
+		this.freeTerms = freeTerms;
+		this.ranges = ranges;
+		this.nonzeros = nonzeros;
+		this.starts = starts;
+		this.rows = rows;
+		this.values = values;
+	}
+	
+	/**
+	 * Reopens a problem stored in a file by
+	 * {@link OffHeapProblemBuilder#build(Path)} or {@link #save(Problem, Path)}.
+	 * The matrix is mapped, not read. Files of version 1 of the
+	 * format, which has no ranges, are read with no ranged constraints
+	 * 
+	 * @param	path	Path of the file
+	 * @return	LP problem of the file
+	 * @throws	IOException	If an I/O error occurs or the file is not valid
+	 * 
+	 * @since	2.1.0
+	 */
+	public static OffHeapProblem open(Path path) throws IOException {
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(header, 0);
+			header.flip();
+			if(header.remaining() < HEADER_SIZE || header.getLong() != MAGIC) {
+				throw new IOException("Not an off-heap problem file: " + path);
+			}
+			int version = header.getInt();
+			if(version < 1 || version > VERSION) {
+				throw new IOException("Unsupported off-heap problem file version " + version + ": " + path);
+			}
+			int numVar = header.getInt();
+			int numRows = header.getInt();
+			header.getInt();
+			long nonzeros = header.getLong();
+			long layout[] = layout(numVar, numRows, nonzeros, version);
+			if(channel.size() < layout[layout.length - 1]) {
+				throw new IOException("Truncated off-heap problem file: " + path);
+			}
+			
+			double objCoeffs[] = new double[numVar];
+			double lowerBounds[] = new double[numVar];
+			double upperBounds[] = new double[numVar];
+			BitSet integers = new BitSet(numVar);
+			BufferArray objSection = map(channel, layout, 0, FileChannel.MapMode.READ_ONLY);
+			BufferArray lowerSection = map(channel, layout, 1, FileChannel.MapMode.READ_ONLY);
+			BufferArray upperSection = map(channel, layout, 2, FileChannel.MapMode.READ_ONLY);
+			BufferArray integerSection = map(channel, layout, 3, FileChannel.MapMode.READ_ONLY);
+			for(int x = 0; x < numVar; x++) {
+				objCoeffs[x] = objSection.getDouble(x);
+				lowerBounds[x] = lowerSection.getDouble(x);
+				upperBounds[x] = upperSection.getDouble(x);
+				integers.set(x, integerSection.getByte(x) != 0);
+			}
+			
+			ConstraintType rowTypes[] = new ConstraintType[numRows];
+			double freeTerms[] = new double[numRows];
+			BufferArray typeSection = map(channel, layout, 4, FileChannel.MapMode.READ_ONLY);
+			BufferArray freeSection = map(channel, layout, 5, FileChannel.MapMode.READ_ONLY);
+			for(int c = 0; c < numRows; c++) {
+				rowTypes[c] = ConstraintType.values()[typeSection.getByte(c)];
+				freeTerms[c] = freeSection.getDouble(c);
+			}
+			double ranges[] = new double[numRows];
+			if(version >= 2) {
+				BufferArray rangeSection = map(channel, layout, 9, FileChannel.MapMode.READ_ONLY);
+				for(int c = 0; c < numRows; c++) {
+					ranges[c] = rangeSection.getDouble(c);
+				}
+			}
+			
+			return new OffHeapProblem(new VariableTable(objCoeffs, lowerBounds, upperBounds, integers), rowTypes, freeTerms, ranges, nonzeros,
+				map(channel, layout, 6, FileChannel.MapMode.READ_ONLY),
+				map(channel, layout, 7, FileChannel.MapMode.READ_ONLY),
+				map(channel, layout, 8, FileChannel.MapMode.READ_ONLY));
+		}
+	}
+	
+	/**
+	 * Saves a problem in the file format of {@link OffHeapProblemBuilder#build(Path)},
+	 * creating or truncating the file, so that it can be reopened
+	 * with {@link #open(Path)} and written as a MPS file later. The
+	 * arrays of the problem are written in bulk, in blocks of
+	 * {@value #BLOCK_SIZE} bytes
+	 * 
+	 * @param	problem	The LP problem to save
+	 * @param	path	Path of the file
+	 * @throws	IOException	If an I/O error occurs
+	 * 
+	 * @since	2.1.0
+	 */
+	public static void save(Problem problem, Path path) throws IOException {
+		
+		VariableTable variables = problem.getVariables();
+		SparseMatrix columns = problem.getColumnMatrix();
+		int numVar = variables.size();
+		int numRows = problem.getRowTypes().length;
+		int nonzeros = columns.getNonzeros();
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			
+			BlockWriter out = new BlockWriter(channel);
+			out.buffer.putLong(MAGIC).putInt(VERSION).putInt(numVar).putInt(numRows).putInt(0).putLong(nonzeros);
+			out.putDoubles(variables.getObjCoeffs(), numVar);
+			out.putDoubles(variables.getLowerBounds(), numVar);
+			out.putDoubles(variables.getUpperBounds(), numVar);
+			for(int x = 0; x < numVar; x++) {
+				out.reserve(1).put((byte) (variables.isInteger(x) ? 1 : 0));
+			}
+			out.align();
+			for(int c = 0; c < numRows; c++) {
+				out.reserve(1).put((byte) problem.getRowTypes()[c].ordinal());
+			}
+			out.align();
+			out.putDoubles(problem.getFreeTerms(), numRows);
+			for(int x = 0; x <= numVar; x++) {
+				out.reserve(Long.BYTES).putLong(columns.getStarts()[x]);
+			}
+			out.putInts(columns.getIndices(), nonzeros);
+			out.putDoubles(columns.getValues(), nonzeros);
+			out.putDoubles(problem.getRanges(), numRows);
+			out.flush();
+			
+			long layout[] = layout(numVar, numRows, nonzeros, VERSION);
+			if(channel.position() != layout[layout.length - 1]) {
+				throw new IllegalStateException("The file does not match its layout");
+			}
+		}
+	}
+	
+	/*
+	 * Writes sections to a channel through a little-endian direct
+	 * buffer, padding each one to a multiple of 8 bytes
+	 */
+	private static class BlockWriter {
+		
+		private FileChannel channel;
+		private ByteBuffer buffer;
+		
+		private BlockWriter(FileChannel channel) {
+			
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		private ByteBuffer reserve(int bytes) throws IOException {
+			
+			if(buffer.remaining() < bytes) {
+				flush();
+			}
+			
+			return buffer;
+		}
+		
+		private void putDoubles(double array[], int length) throws IOException {
+			
+			for(int i = 0; i < length;) {
+				int count = Math.min(length - i, reserve(Double.BYTES).remaining() / Double.BYTES);
+				buffer.asDoubleBuffer().put(array, i, count);
+				buffer.position(buffer.position() + Double.BYTES * count);
+				i += count;
+			}
+			align();
+		}
+		
+		private void putInts(int array[], int length) throws IOException {
+			
+			for(int i = 0; i < length;) {
+				int count = Math.min(length - i, reserve(Integer.BYTES).remaining() / Integer.BYTES);
+				buffer.asIntBuffer().put(array, i, count);
+				buffer.position(buffer.position() + Integer.BYTES * count);
+				i += count;
+			}
+			align();
+		}
+		
+		private void align() throws IOException {
+			
+			while((channel.position() + buffer.position()) % 8 != 0) {
+				reserve(1).put((byte) 0);
+			}
+		}
+		
+		private void flush() throws IOException {
+			
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+		
+	}
+	
+	/*
+	 * Returns the offsets in the file of the objective coefficients, lower bounds,
+	 * upper bounds, integer flags, row types, free terms, column starts, row indices,
+	 * values and, from version 2 on, ranges, followed by the size of the file. Every
+	 * section is 8-byte aligned
+	 */
+	private static long[] layout(int numVar, int numRows, long nonzeros, int version) {
+		
+		long sizes[] = {
+			Double.BYTES * (long) numVar, Double.BYTES * (long) numVar, Double.BYTES * (long) numVar, numVar,
+			numRows, Double.BYTES * (long) numRows,
+			Long.BYTES * (numVar + 1L), Integer.BYTES * nonzeros, Double.BYTES * nonzeros
+		};
+		if(version >= 2) {
+			sizes = Arrays.copyOf(sizes, sizes.length + 1);
+			sizes[sizes.length - 1] = Double.BYTES * (long) numRows;
+		}
+		long layout[] = new long[sizes.length + 1];
+		layout[0] = HEADER_SIZE;
+		for(int s = 0; s < sizes.length; s++) {
+			layout[s + 1] = layout[s] + ((sizes[s] + 7) & ~7L);
+		}
+		
+		return layout;
+	}
+	
+	private static BufferArray map(FileChannel channel, long layout[], int section) throws IOException {
+		
+		return map(channel, layout, section, FileChannel.MapMode.READ_WRITE);
+	}
+	
+	private static BufferArray map(FileChannel channel, long layout[], int section, FileChannel.MapMode mode) throws IOException {
+		
+		return BufferArray.map(channel, mode, layout[section], layout[section + 1] - layout[section]);
+	}
+	
+	public VariableTable getVariables() {
+		return variables;
+	}
+	
+	public ConstraintType[] getRowTypes() {
+		return rowTypes;
+	}
+	
+	public double[] getFreeTerms() {
+		return freeTerms;
+	}
+	
+	/**
+	 * Returns the range of each constraint, with the meaning of
+	 * {@link Constraint#getRange()}, zero for those with no range
+	 * 
+	 * @return	ranges of the constraints
+	 * 
+	 * @since	2.1.0
+	 */
+	public double[] getRanges() {
+		return ranges;
+	}
+	
+	/**
+	 * Returns whether any constraint has a range, so that the
+	 * MPS file has a RANGES section
+	 * 
+	 * @return	whether there are ranged constraints
+	 * 
+	 * @since	2.1.0
+	 */
+	public boolean hasRanges() {
+		
+		for(double range : ranges) {
+			if(range != 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns the number of stored nonzeros
+	 * 
+	 * @return	number of nonzeros of the matrix
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getNonzeros() {
+		return nonzeros;
+	}
+	
+	/**
+	 * Returns the position of the first nonzero of a column.
+	 * The nonzeros of column {@code x} are in positions
+	 * {@code getColumnStart(x)} to {@code getColumnStart(x+1)-1},
+	 * sorted by row
+	 * 
+	 * @param	x	Index of the column, up to the number of variables
+	 * @return	position of the first nonzero of the column
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getColumnStart(int x) {
+		return starts.getLong(x);
+	}
+	
+	/**
+	 * Returns the row of a nonzero
+	 * 
+	 * @param	k	Position of the nonzero
+	 * @return	index of the constraint of the nonzero
+	 * 
+	 * @since	2.1.0
+	 */
+	public int getRow(long k) {
+		return rows.getInt(k);
+	}
+	
+	/**
+	 * Returns the value of a nonzero
+	 * 
+	 * @param	k	Position of the nonzero
+	 * @return	coefficient of the nonzero
+	 * 
+	 * @since	2.1.0
+	 */
+	public double getValue(long k) {
+		return values.getDouble(k);
+	}
+	
+	/**
+	 * Releases the storage of the matrix, so that it can no longer
+	 * be read. This only drops the references to the buffers: Java
+	 * has no supported way to free direct memory or unmap a file on
+	 * demand, so the memory is given back to the operating system,
+	 * and a mapped file unmapped, when the garbage collector reclaims
+	 * the buffers, which is not deterministic. Until then, the mapped
+	 * file may not be deletable on some platforms. A file-backed
+	 * problem keeps its file
+	 * 
+	 * @since	2.1.0
+	 */
+	@Override
+	public void close() {
+		
+		starts.release();
+		rows.release();
+		values.release();
+	}
+	
+}
\ No newline at end of file
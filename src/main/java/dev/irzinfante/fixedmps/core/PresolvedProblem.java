@@ -0,0 +1,478 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+import dev.irzinfante.fixedmps.core.Problem.ProblemBuilder;
+
+/**
+ * Reduced version of a problem, with the trivial parts removed
+ * before it is written, and the mapping to solve the original
+ * problem from a solution of the reduced one. Presolve repeats,
+ * until nothing changes or for at most {@value #MAX_PASSES} passes:
+ * <ul>
+ * <li>Variables with equal lower and upper bounds are fixed, moving
+ * their terms to the free terms and the objective offset</li>
+ * <li>Constraints with no nonzeros that are always satisfied are
+ * dropped. Infeasible ones are kept for the solver to report</li>
+ * <li>Constraints with a single nonzero are turned into bounds
+ * of their variable, unless the bounds would cross</li>
+ * </ul>
+ * Finally, constraints with the same nonzeros are found by hashing,
+ * in time proportional to the number of nonzeros, and merged into
+ * a single constraint, an equality or a ranged one when both sides
+ * are limited
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class PresolvedProblem {
+	
+	private static final int MAX_PASSES = 8;
+	
+	private Problem problem;
+	private int rowMapping[];
+	private int columnMapping[];
+	private double fixedValues[];
+	private double objectiveOffset;
+	
+	private PresolvedProblem() {
+	}
+	
+	/**
+	 * Presolves a problem, which is left unchanged
+	 *
+	 * @param	original	The LP problem to reduce
+	 * @return	reduced problem and mapping to the original one
+	 * 
+	 * @since	2.1.0
+	 */
+	public static PresolvedProblem presolve(Problem original) {
+		
+		return new Presolver(original).presolve();
+	}
+	
+	/**
+	 * Returns the reduced problem
+	 * 
+	 * @return	LP problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public Problem getProblem() {
+		return problem;
+	}
+	
+	/**
+	 * Returns the index in the original problem of each
+	 * constraint of the reduced problem
+	 * 
+	 * @return	original indices of the constraints
+	 * 
+	 * @since	2.1.0
+	 */
+	public int[] getRowMapping() {
+		return rowMapping;
+	}
+	
+	/**
+	 * Returns the index in the original problem of each
+	 * variable of the reduced problem
+	 * 
+	 * @return	original indices of the variables
+	 * 
+	 * @since	2.1.0
+	 */
+	public int[] getColumnMapping() {
+		return columnMapping;
+	}
+	
+	/**
+	 * Returns the value of the objective function of the original
+	 * problem that comes from the fixed variables, to be added to
+	 * the objective value of the reduced problem
+	 * 
+	 * @return	objective offset
+	 * 
+	 * @since	2.1.0
+	 */
+	public double getObjectiveOffset() {
+		return objectiveOffset;
+	}
+	
+	/**
+	 * Returns the values of the variables of the original problem
+	 * from the values of the variables of the reduced problem
+	 * 
+	 * @param	solution	Values of the variables of the reduced problem
+	 * @return	values of the variables of the original problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public double[] postsolve(double solution[]) {
+		
+		if(solution.length != columnMapping.length) {
+			throw new IllegalArgumentException("There must be a value for each variable of the reduced problem");
+		}
+		
+		double values[] = fixedValues.clone();
+		for(int x = 0; x < columnMapping.length; x++) {
+			values[columnMapping[x]] = solution[x];
+		}
+		
+		return values;
+	}
+	
+	/*
+	 * State of the reductions of a problem
+	 */
+	private static class Presolver {
+		
+		private Problem original;
+		private int starts[];
+		private int indices[];
+		private double values[];
+		private SparseMatrix columns;
+		
+		private double lowerBounds[];
+		private double upperBounds[];
+		private boolean fixed[];
+		private double fixedValues[];
+		private double objectiveOffset;
+		
+		private ConstraintType rowTypes[];
+		private double freeTerms[];
+		private double ranges[];
+		private int counts[];
+		private boolean removed[];
+		
+		private Presolver(Problem original) {
+			
+			this.original = original;
+			this.starts = original.getMatrix().getStarts();
+			this.indices = original.getMatrix().getIndices();
+			this.values = original.getMatrix().getValues();
+			this.columns = original.getColumnMatrix();
+			
+			VariableTable variables = original.getVariables();
+			this.lowerBounds = variables.getLowerBounds().clone();
+			this.upperBounds = variables.getUpperBounds().clone();
+			this.fixed = new boolean[variables.size()];
+			this.fixedValues = new double[variables.size()];
+			this.objectiveOffset = 0;
+			
+			this.rowTypes = original.getRowTypes().clone();
+			this.freeTerms = original.getFreeTerms().clone();
+			this.ranges = original.getRanges().clone();
+			this.counts = new int[rowTypes.length];
+			this.removed = new boolean[rowTypes.length];
+			for(int c = 0; c < rowTypes.length; c++) {
+				counts[c] = starts[c+1] - starts[c];
+			}
+		}
+		
+		private PresolvedProblem presolve() {
+			
+			boolean changed = true;
+			for(int pass = 0; pass < MAX_PASSES && changed; pass++) {
+				changed = fixColumns() | reduceRows();
+			}
+			mergeDuplicates();
+			
+			return build();
+		}
+		
+		private boolean fixColumns() {
+			
+			boolean changed = false;
+			double objCoeffs[] = original.getVariables().getObjCoeffs();
+			for(int x = 0; x < fixed.length; x++) {
+				if(fixed[x] || lowerBounds[x] != upperBounds[x]) {
+					continue;
+				}
+				
+				fixed[x] = true;
+				fixedValues[x] = lowerBounds[x];
+				objectiveOffset += objCoeffs[x] * lowerBounds[x];
+				for(int k = columns.getStarts()[x]; k < columns.getStarts()[x+1]; k++) {
+					int c = columns.getIndices()[k];
+					freeTerms[c] -= columns.getValues()[k] * lowerBounds[x];
+					counts[c]--;
+				}
+				changed = true;
+			}
+			
+			return changed;
+		}
+		
+		private boolean reduceRows() {
+			
+			boolean changed = false;
+			for(int c = 0; c < rowTypes.length; c++) {
+				if(removed[c]) {
+					continue;
+				}
+				
+				if(counts[c] == 0) {
+					if(rowLower(c) <= 0 && rowUpper(c) >= 0) {
+						removed[c] = true;
+						changed = true;
+					}
+				} else if(counts[c] == 1) {
+					int k = starts[c];
+					while(fixed[indices[k]]) {
+						k++;
+					}
+					double lower = rowLower(c) / values[k] + 0.0, upper = rowUpper(c) / values[k] + 0.0;
+					if(values[k] > 0 ? toBounds(indices[k], lower, upper) : toBounds(indices[k], upper, lower)) {
+						removed[c] = true;
+						changed = true;
+					}
+				}
+			}
+			
+			return changed;
+		}
+		
+		/*
+		 * Tightens the bounds of a variable with the constraint lower <= x <= upper,
+		 * unless they would cross
+		 */
+		private boolean toBounds(int x, double lower, double upper) {
+			
+			lower = Math.max(lowerBounds[x], lower);
+			upper = Math.min(upperBounds[x], upper);
+			if(lower > upper || Double.isNaN(lower) || Double.isNaN(upper)) {
+				return false;
+			}
+			
+			lowerBounds[x] = lower;
+			upperBounds[x] = upper;
+			
+			return true;
+		}
+		
+		/*
+		 * Lower limit of the activity of a constraint, with the meaning
+		 * of the ranges in the RANGES section, or -Infinity if there is none
+		 */
+		private double rowLower(int c) {
+			
+			switch(rowTypes[c]) {
+				case L:
+					return ranges[c] != 0 ? freeTerms[c] - Math.abs(ranges[c]) : Double.NEGATIVE_INFINITY;
+				case G:
+					return freeTerms[c];
+				default:
+					return ranges[c] < 0 ? freeTerms[c] + ranges[c] : freeTerms[c];
+			}
+		}
+		
+		/*
+		 * Upper limit of the activity of a constraint, or +Infinity if there is none
+		 */
+		private double rowUpper(int c) {
+			
+			switch(rowTypes[c]) {
+				case L:
+					return freeTerms[c];
+				case G:
+					return ranges[c] != 0 ? freeTerms[c] + Math.abs(ranges[c]) : Double.POSITIVE_INFINITY;
+				default:
+					return ranges[c] > 0 ? freeTerms[c] + ranges[c] : freeTerms[c];
+			}
+		}
+		
+		/*
+		 * Groups the rows with the same nonzeros in chained hash buckets,
+		 * and merges each group into its first row
+		 */
+		private void mergeDuplicates() {
+			
+			int numRows = rowTypes.length;
+			int buckets[] = new int[Integer.highestOneBit(Math.max(1, 2 * numRows - 1)) << 1];
+			Arrays.fill(buckets, -1);
+			int chain[] = new int[numRows];
+			int group[] = new int[numRows]; // Next row of the same group
+			Arrays.fill(group, -1);
+			int last[] = new int[numRows]; // Last row of the group, only for the first one
+			Arrays.fill(last, -1);
+			
+			for(int c = 0; c < numRows; c++) {
+				if(removed[c] || counts[c] == 0) {
+					continue;
+				}
+				
+				int bucket = hash(c) & (buckets.length - 1);
+				int first = buckets[bucket];
+				while(first != -1 && !sameNonzeros(first, c)) {
+					first = chain[first];
+				}
+				if(first == -1) {
+					chain[c] = buckets[bucket];
+					buckets[bucket] = c;
+					last[c] = c;
+				} else {
+					group[last[first]] = c;
+					last[first] = c;
+				}
+			}
+			
+			for(int c = 0; c < numRows; c++) {
+				if(last[c] != -1 && group[c] != -1) {
+					merge(c, group);
+				}
+			}
+		}
+		
+		private void merge(int first, int group[]) {
+			
+			double lower = Double.NEGATIVE_INFINITY, upper = Double.POSITIVE_INFINITY;
+			for(int c = first; c != -1; c = group[c]) {
+				lower = Math.max(lower, rowLower(c));
+				upper = Math.min(upper, rowUpper(c));
+			}
+			if(lower > upper) {
+				return;
+			}
+			
+			boolean lowered = lower > Double.NEGATIVE_INFINITY, uppered = upper < Double.POSITIVE_INFINITY;
+			for(int c = group[first]; c != -1; c = group[c]) {
+				removed[c] = true;
+			}
+			ranges[first] = 0;
+			if(lowered && uppered && lower == upper) {
+				rowTypes[first] = ConstraintType.E;
+				freeTerms[first] = lower;
+			} else if(lowered && uppered && Double.isFinite(upper - lower)) {
+				rowTypes[first] = ConstraintType.G;
+				freeTerms[first] = lower;
+				ranges[first] = upper - lower;
+			} else if(uppered) {
+				rowTypes[first] = ConstraintType.L;
+				freeTerms[first] = upper;
+				if(lowered) {
+					int second = group[first];
+					removed[second] = false;
+					rowTypes[second] = ConstraintType.G;
+					freeTerms[second] = lower;
+					ranges[second] = 0;
+				}
+			} else {
+				rowTypes[first] = ConstraintType.G;
+				freeTerms[first] = lower;
+			}
+		}
+		
+		private int hash(int c) {
+			
+			long hash = 0;
+			for(int k = starts[c]; k < starts[c+1]; k++) {
+				if(!fixed[indices[k]]) {
+					hash = 31 * hash + indices[k];
+					hash = 31 * hash + Double.doubleToLongBits(values[k] + 0.0);
+				}
+			}
+			hash *= 0x9E3779B97F4A7C15L;
+			
+			return (int) (hash ^ (hash >>> 32));
+		}
+		
+		private boolean sameNonzeros(int c1, int c2) {
+			
+			if(counts[c1] != counts[c2]) {
+				return false;
+			}
+			
+			int k1 = starts[c1], k2 = starts[c2];
+			for(int i = 0; i < counts[c1]; i++, k1++, k2++) {
+				while(fixed[indices[k1]]) k1++;
+				while(fixed[indices[k2]]) k2++;
+				if(indices[k1] != indices[k2] || values[k1] != values[k2]) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+		private PresolvedProblem build() {
+			
+			VariableTable variables = original.getVariables();
+			int newIndex[] = new int[fixed.length];
+			int numColumns = 0;
+			for(int x = 0; x < fixed.length; x++) {
+				newIndex[x] = fixed[x] ? -1 : numColumns++;
+			}
+			
+			int columnMapping[] = new int[numColumns];
+			double objCoeffs[] = new double[numColumns];
+			double lower[] = new double[numColumns];
+			double upper[] = new double[numColumns];
+			BitSet integers = new BitSet(numColumns);
+			for(int x = 0; x < fixed.length; x++) {
+				if(!fixed[x]) {
+					int y = newIndex[x];
+					columnMapping[y] = x;
+					objCoeffs[y] = variables.getObjCoeffs()[x];
+					lower[y] = lowerBounds[x];
+					upper[y] = upperBounds[x];
+					integers.set(y, variables.isInteger(x));
+				} else {
+					fixedValues[x] = lowerBounds[x];
+				}
+			}
+			
+			ProblemBuilder builder = new ProblemBuilder(new VariableTable(objCoeffs, lower, upper, integers));
+			int rowMapping[] = new int[rowTypes.length];
+			int numRows = 0;
+			for(int c = 0; c < rowTypes.length; c++) {
+				if(removed[c]) {
+					continue;
+				}
+				
+				int rowIndices[] = new int[counts[c]];
+				double rowValues[] = new double[counts[c]];
+				for(int k = starts[c], i = 0; k < starts[c+1]; k++) {
+					if(!fixed[indices[k]]) {
+						rowIndices[i] = newIndex[indices[k]];
+						rowValues[i++] = values[k];
+					}
+				}
+				builder.addConstraint(Constraint.create(rowIndices, rowValues, numColumns, rowTypes[c], freeTerms[c], ranges[c]));
+				rowMapping[numRows++] = c;
+			}
+			
+			PresolvedProblem presolved = new PresolvedProblem();
+			presolved.problem = builder.build();
+			presolved.rowMapping = Arrays.copyOf(rowMapping, numRows);
+			presolved.columnMapping = columnMapping;
+			presolved.fixedValues = fixedValues;
+			presolved.objectiveOffset = objectiveOffset;
+			
+			return presolved;
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -18,10 +18,10 @@
 
 package dev.irzinfante.fixedmps.core;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
 
-import dev.irzinfante.fixedmps.core.Constraint.ConstraintBuilder;
+import dev.irzinfante.fixedmps.constant.ConstraintType;
 
 /**
  * @author      irzinfante iker@irzinfante.dev
@@ -29,8 +29,14 @@ import dev.irzinfante.fixedmps.core.Constraint.ConstraintBuilder;
  */
 public class Problem {
 	
-	private Variable columns[];
-	private Constraint rows[];
+	private VariableTable variables;
+	private SparseMatrix matrix;
+	private ConstraintType rowTypes[];
+	private double freeTerms[];
+	private double ranges[];
+	private volatile SparseMatrix columnMatrix;
+	private volatile Variable columns[];
+	private volatile Constraint rows[];
 	
 	/**
 	 * @author      irzinfante iker@irzinfante.dev
@@ -38,9 +44,21 @@ public class Problem {
 	 */
 	public static class ProblemBuilder {
 		
-		private Variable columns[];
-		private List<Constraint> rows;
+		private VariableTable variables;
 		private int numVar;
+		private double objCoeffs[];
+		private double lowerBounds[];
+		private double upperBounds[];
+		private BitSet integers;
+		
+		private int numRows;
+		private int starts[];
+		private int indices[];
+		private double values[];
+		private ConstraintType rowTypes[];
+		private double freeTerms[];
+		private double ranges[];
+		private boolean rangesShared;
 		
 		/**
 		 * Initializes a Problem object builder
@@ -51,13 +69,67 @@ public class Problem {
 		 */
 		public ProblemBuilder(Variable ... variables) {
 			
-			this.columns = variables;
-			this.rows = new ArrayList<>();
-			this.numVar = variables.length;
+			this(VariableTable.of(variables));
 		}
 		
 		/**
-		 * Adds a constraint to the problem
+		 * Initializes a Problem object builder from the variables
+		 * in columnar storage
+		 *
+		 * @param	variables	Variables of the problem
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemBuilder(VariableTable variables) {
+			
+			this.variables = variables;
+			this.numVar = variables.size();
+			
+			this.numRows = 0;
+			this.starts = new int[17];
+			this.indices = new int[16];
+			this.values = new double[16];
+			this.rowTypes = new ConstraintType[16];
+			this.freeTerms = new double[16];
+			this.ranges = new double[16];
+		}
+		
+		/**
+		 * Adds a variable to the problem. The arrays of the
+		 * initial variables are copied the first time, so that
+		 * they are not modified
+		 *
+		 * @param	variable	Variable to add to the problem
+		 * @return	zero-based index of the added variable
+		 * 
+		 * @since	2.1.0
+		 */
+		public int addVariable(Variable variable) {
+			
+			if(objCoeffs == null) {
+				int capacity = Math.max(16, 2 * numVar);
+				objCoeffs = Arrays.copyOf(variables.getObjCoeffs(), capacity);
+				lowerBounds = Arrays.copyOf(variables.getLowerBounds(), capacity);
+				upperBounds = Arrays.copyOf(variables.getUpperBounds(), capacity);
+				integers = (BitSet) variables.getIntegers().clone();
+			} else if(numVar == objCoeffs.length) {
+				int capacity = 2 * numVar;
+				objCoeffs = Arrays.copyOf(objCoeffs, capacity);
+				lowerBounds = Arrays.copyOf(lowerBounds, capacity);
+				upperBounds = Arrays.copyOf(upperBounds, capacity);
+			}
+			
+			objCoeffs[numVar] = variable.getObjCoeff();
+			lowerBounds[numVar] = variable.getLowerBound();
+			upperBounds[numVar] = variable.getUpperBound();
+			integers.set(numVar, variable.isInteger());
+			
+			return numVar++;
+		}
+		
+		/**
+		 * Adds a constraint to the problem. Only its nonzero
+		 * coefficients are stored
 		 *
 		 * @param	constraint	Constraint to add to the problem
 		 * @return	ProblemBuilder with the added constraint
@@ -66,26 +138,271 @@ public class Problem {
 		 */
 		public ProblemBuilder addConstraint(Constraint constraint) {
 			
-			double coeffs[] = new double[numVar];
-			for(int i = 0; i < Math.min(numVar, constraint.getCoeffs().length); i++) {
-				coeffs[i] = constraint.getCoeffs()[i];
+			int nonzeros = starts[numRows];
+			int rowIndices[] = constraint.getIndices();
+			double rowValues[] = constraint.getValues();
+			
+			ensureCapacity(numRows + 1, nonzeros + rowIndices.length);
+			
+			for(int k = 0; k < rowIndices.length && rowIndices[k] < numVar; k++) {
+				indices[nonzeros] = rowIndices[k];
+				values[nonzeros] = rowValues[k];
+				nonzeros++;
+			}
+			
+			rowTypes[numRows] = constraint.getType();
+			freeTerms[numRows] = constraint.getFree();
+			ranges[numRows] = constraint.getRange();
+			starts[++numRows] = nonzeros;
+			
+			return this;
+		}
+		
+		/**
+		 * Adds constraints in bulk from a matrix in compressed sparse
+		 * row (CSR) storage. The nonzeros of row {@code c} are in
+		 * positions {@code starts[c]} to {@code starts[c+1]-1} of the
+		 * indices and values arrays. The arrays are copied in a single
+		 * pass, dropping zero coefficients and summing the coefficients
+		 * of a variable repeated in a row
+		 *
+		 * @param	starts	Start of each row, and the number of nonzeros at the end
+		 * @param	indices	Zero-based variable index of each nonzero
+		 * @param	values	Coefficient of each nonzero
+		 * @param	rowTypes	Type of each constraint
+		 * @param	freeTerms	Free term of each constraint
+		 * @return	ProblemBuilder with the added constraints
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemBuilder addConstraintsCSR(int starts[], int indices[], double values[], ConstraintType rowTypes[], double freeTerms[]) {
+			
+			return addConstraintsCSR(starts, indices, values, rowTypes, freeTerms, false);
+		}
+		
+		/**
+		 * Adds constraints in bulk from a matrix in compressed sparse
+		 * row (CSR) storage. If the ownership of the arrays is
+		 * transferred and there are no constraints yet, the arrays are
+		 * used as the storage of the builder without copying them: they
+		 * are fixed in place and they must not be used afterwards
+		 *
+		 * @param	starts	Start of each row, and the number of nonzeros at the end
+		 * @param	indices	Zero-based variable index of each nonzero
+		 * @param	values	Coefficient of each nonzero
+		 * @param	rowTypes	Type of each constraint
+		 * @param	freeTerms	Free term of each constraint
+		 * @param	transfer	Whether the builder takes ownership of the arrays
+		 * @return	ProblemBuilder with the added constraints
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemBuilder addConstraintsCSR(int starts[], int indices[], double values[], ConstraintType rowTypes[], double freeTerms[], boolean transfer) {
+			
+			int rows = rowTypes.length;
+			if(freeTerms.length != rows || starts.length != rows + 1) {
+				throw new IllegalArgumentException("There must be as many free terms as row types, and one more row start");
+			}
+			if(indices.length != values.length) {
+				throw new IllegalArgumentException("There must be as many coefficients as indices");
+			}
+			if(starts[0] != 0) {
+				throw new IllegalArgumentException("The first row must start at zero");
+			}
+			boolean adopt = transfer && numRows == 0 && rows > 0;
+			for(int c = 0; c < rows; c++) {
+				if(starts[c+1] < starts[c] || starts[c+1] > indices.length) {
+					throw new IllegalArgumentException("Row starts must be non-decreasing and within the nonzeros");
+				}
+				// Adopted arrays are rewritten in place, so they are checked before
+				for(int k = starts[c]; adopt && k < starts[c+1]; k++) {
+					if(indices[k] < 0 || indices[k] >= numVar) {
+						throw new IllegalArgumentException("Variable indices must be between zero and the number of variables");
+					}
+				}
+			}
+			
+			if(adopt) {
+				this.starts = starts;
+				this.indices = indices;
+				this.values = values;
+				this.rowTypes = rowTypes;
+				this.freeTerms = freeTerms;
+				this.ranges = new double[rows];
+				this.rangesShared = false;
+			} else {
+				ensureCapacity(numRows + rows, this.starts[numRows] + starts[rows]);
+			}
+			appendRows(starts, 0, indices, values, rowTypes, freeTerms);
+			
+			return this;
+		}
+		
+		/**
+		 * Adds constraints in bulk from a matrix in coordinate (COO)
+		 * storage, with the nonzeros in any order. They are sorted
+		 * by row with a counting sort, so it takes time proportional
+		 * to the number of nonzeros and rows. Zero coefficients are
+		 * dropped and the coefficients of a repeated position summed
+		 *
+		 * @param	rows	Zero-based constraint index of each nonzero
+		 * @param	columns	Zero-based variable index of each nonzero
+		 * @param	values	Coefficient of each nonzero
+		 * @param	rowTypes	Type of each constraint
+		 * @param	freeTerms	Free term of each constraint
+		 * @return	ProblemBuilder with the added constraints
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemBuilder addConstraintsCOO(int rows[], int columns[], double values[], ConstraintType rowTypes[], double freeTerms[]) {
+			
+			int numNew = rowTypes.length;
+			if(freeTerms.length != numNew) {
+				throw new IllegalArgumentException("There must be as many free terms as row types");
+			}
+			if(rows.length != values.length || columns.length != values.length) {
+				throw new IllegalArgumentException("There must be as many coefficients as indices");
+			}
+			
+			int counts[] = new int[numNew + 1];
+			for(int k = 0; k < rows.length; k++) {
+				if(rows[k] < 0 || rows[k] >= numNew) {
+					throw new IllegalArgumentException("Constraint indices must be between zero and the number of row types");
+				}
+				if(values[k] != 0) counts[rows[k] + 1]++;
+			}
+			for(int c = 0; c < numNew; c++) {
+				counts[c + 1] += counts[c];
 			}
 			
-			switch (constraint.getType()) {
-				case E:
-					rows.add(new ConstraintBuilder(coeffs).equalTo(constraint.getFree()));
-					break;
-				case L:
-					rows.add(new ConstraintBuilder(coeffs).lessThan(constraint.getFree()));
-					break;
-				case G:
-					rows.add(new ConstraintBuilder(coeffs).greaterThan(constraint.getFree()));
-					break;
+			int base = starts[numRows];
+			ensureCapacity(numRows + numNew, base + counts[numNew]);
+			int next[] = Arrays.copyOf(counts, numNew);
+			for(int k = 0; k < rows.length; k++) {
+				if(values[k] != 0) {
+					int position = base + next[rows[k]]++;
+					indices[position] = columns[k];
+					this.values[position] = values[k];
+				}
 			}
+			appendRows(counts, base, indices, this.values, rowTypes, freeTerms);
 			
 			return this;
 		}
 		
+		/**
+		 * Sets the range of a constraint already added, such as one
+		 * added in bulk, with the meaning of {@link Constraint#getRange()}
+		 *
+		 * @param	c	Zero-based index of the constraint
+		 * @param	range	Range of the constraint, or zero for none
+		 * @return	ProblemBuilder with the changed range
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemBuilder setRange(int c, double range) {
+			
+			if(c < 0 || c >= numRows) {
+				throw new IndexOutOfBoundsException("Constraint " + c + " has not been added");
+			}
+			// The ranges may be shared with a problem already built
+			if(rangesShared) {
+				ranges = ranges.clone();
+				rangesShared = false;
+			}
+			ranges[c] = range;
+			
+			return this;
+		}
+		
+		/*
+		 * Copies rows given by their starts (shifted by an offset) after
+		 * the existing ones, checking the variable indices. The source
+		 * may be the storage of the builder itself, as the nonzeros are
+		 * only moved backwards. The number of rows is updated at the
+		 * end, so that a failure leaves the builder as it was
+		 */
+		private void appendRows(int rowStarts[], int offset, int rowIndices[], double rowValues[], ConstraintType types[], double free[]) {
+			
+			int row = numRows;
+			int nonzeros = starts[row];
+			int to = rowStarts[0] + offset;
+			for(int c = 0; c < types.length; c++) {
+				int from = to;
+				to = rowStarts[c+1] + offset;
+				int rowStart = nonzeros;
+				boolean sorted = true;
+				for(int k = from; k < to; k++) {
+					int index = rowIndices[k];
+					if(index < 0 || index >= numVar) {
+						throw new IllegalArgumentException("Variable indices must be between zero and the number of variables");
+					}
+					if(rowValues[k] != 0) {
+						if(nonzeros > rowStart && index <= indices[nonzeros-1]) sorted = false;
+						indices[nonzeros] = index;
+						values[nonzeros] = rowValues[k];
+						nonzeros++;
+					}
+				}
+				if(!sorted) {
+					nonzeros = sortRow(rowStart, nonzeros);
+				}
+				rowTypes[row] = types[c];
+				freeTerms[row] = free[c];
+				ranges[row] = 0;
+				starts[++row] = nonzeros;
+			}
+			numRows = row;
+		}
+		
+		/*
+		 * Sorts the nonzeros of a row by variable, summing repeated
+		 * variables and dropping the sums that are zero
+		 */
+		private int sortRow(int from, int to) {
+			
+			long keys[] = new long[to - from];
+			double rowValues[] = Arrays.copyOfRange(values, from, to);
+			for(int k = 0; k < keys.length; k++) {
+				keys[k] = ((long) indices[from + k] << 32) | k;
+			}
+			Arrays.sort(keys);
+			
+			int nonzeros = from;
+			for(int k = 0; k < keys.length; k++) {
+				int index = (int) (keys[k] >>> 32);
+				double value = rowValues[(int) keys[k]];
+				if(nonzeros > from && indices[nonzeros-1] == index) {
+					values[nonzeros-1] += value;
+				} else {
+					if(nonzeros > from && values[nonzeros-1] == 0) nonzeros--;
+					indices[nonzeros] = index;
+					values[nonzeros] = value;
+					nonzeros++;
+				}
+			}
+			if(nonzeros > from && values[nonzeros-1] == 0) nonzeros--;
+			
+			return nonzeros;
+		}
+		
+		private void ensureCapacity(int rows, int nonzeros) {
+			
+			if(rows > rowTypes.length) {
+				int capacity = Math.max(Math.max(16, 2 * rowTypes.length), rows);
+				starts = Arrays.copyOf(starts, capacity + 1);
+				rowTypes = Arrays.copyOf(rowTypes, capacity);
+				freeTerms = Arrays.copyOf(freeTerms, capacity);
+				ranges = Arrays.copyOf(ranges, capacity);
+				rangesShared = false;
+			}
+			if(nonzeros > indices.length) {
+				int capacity = Math.max(2 * indices.length, nonzeros);
+				indices = Arrays.copyOf(indices, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+		}
+		
 		/**
 		 * Returns the created Problem object
 		 * 
@@ -95,15 +412,240 @@ public class Problem {
 		 */
 		public Problem build() {
 			
+			BuildEvent event = new BuildEvent();
+			event.begin();
+			
 			Problem lp = new Problem();
 			
-			Constraint rows[] = new Constraint[this.rows.size()];
-			for(int i = 0; i < this.rows.size(); i++) {
-				rows[i] = this.rows.get(i);
-			} 
+			int nonzeros = starts[numRows];
+			
+			if(objCoeffs == null) {
+				lp.setVariables(this.variables);
+			} else {
+				lp.setVariables(new VariableTable(
+					Arrays.copyOf(objCoeffs, numVar),
+					Arrays.copyOf(lowerBounds, numVar),
+					Arrays.copyOf(upperBounds, numVar),
+					(BitSet) integers.clone()
+				));
+			}
+			// Arrays that fit exactly are shared, as the builder only writes past them
+			lp.setMatrix(new SparseMatrix(
+				starts.length == numRows + 1 ? starts : Arrays.copyOf(starts, numRows + 1),
+				indices.length == nonzeros ? indices : Arrays.copyOf(indices, nonzeros),
+				values.length == nonzeros ? values : Arrays.copyOf(values, nonzeros),
+				numVar
+			));
+			lp.setRowTypes(rowTypes.length == numRows ? rowTypes : Arrays.copyOf(rowTypes, numRows));
+			lp.setFreeTerms(freeTerms.length == numRows ? freeTerms : Arrays.copyOf(freeTerms, numRows));
+			rangesShared = ranges.length == numRows;
+			lp.setRanges(rangesShared ? ranges : Arrays.copyOf(ranges, numRows));
 			
-			lp.setColumns(this.columns);
-			lp.setRows(rows);
+			event.end();
+			if(event.shouldCommit()) {
+				event.rows = numRows;
+				event.columns = numVar;
+				event.nonzeros = nonzeros;
+				event.commit();
+			}
+			
+			return lp;
+		}
+		
+	}
+	
+	/**
+	 * Builder of variants of a Problem object with changed
+	 * objective coefficients, bounds, free terms or constraint
+	 * types. The constraint matrix and its column-major copy, which
+	 * is built once when the modifier is created if the original
+	 * problem does not have it yet, are shared with the original
+	 * problem and every variant, and each of the other arrays is only copied the first time one
+	 * of its values changes. As problems expose whole arrays, a
+	 * variant costs time and memory proportional to the number of
+	 * variables or constraints of each changed array, not to the
+	 * number of changes: changing one free term copies all of them.
+	 * Apart from that single transposition, the cost does not depend
+	 * on the number of nonzeros
+	 * 
+	 * @author      irzinfante iker@irzinfante.dev
+	 * @since       2.1.0
+	 */
+	public static class ProblemModifier {
+		
+		private Problem base;
+		private double objCoeffs[];
+		private double lowerBounds[];
+		private double upperBounds[];
+		private ConstraintType rowTypes[];
+		private double freeTerms[];
+		private double ranges[];
+		
+		/**
+		 * Initializes a ProblemModifier object builder, building
+		 * the column-major matrix of the problem if needed
+		 *
+		 * @param	base	Problem to derive the variants from, which is left unchanged
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemModifier(Problem base) {
+			
+			this.base = base;
+			base.getColumnMatrix();
+		}
+		
+		/**
+		 * Changes the coefficient of a variable in the objective function
+		 *
+		 * @param	x	Zero-based index of the variable
+		 * @param	objCoeff	New coefficient
+		 * @return	ProblemModifier with the changed coefficient
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemModifier setObjCoeff(int x, double objCoeff) {
+			
+			if(objCoeffs == null) {
+				objCoeffs = base.variables.getObjCoeffs().clone();
+			}
+			objCoeffs[x] = objCoeff;
+			
+			return this;
+		}
+		
+		/**
+		 * Changes the lower bound of a variable
+		 *
+		 * @param	x	Zero-based index of the variable
+		 * @param	lower	New lower bound
+		 * @return	ProblemModifier with the changed bound
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemModifier setLowerBound(int x, double lower) {
+			
+			if(lowerBounds == null) {
+				lowerBounds = base.variables.getLowerBounds().clone();
+			}
+			lowerBounds[x] = lower;
+			
+			return this;
+		}
+		
+		/**
+		 * Changes the upper bound of a variable
+		 *
+		 * @param	x	Zero-based index of the variable
+		 * @param	upper	New upper bound
+		 * @return	ProblemModifier with the changed bound
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemModifier setUpperBound(int x, double upper) {
+			
+			if(upperBounds == null) {
+				upperBounds = base.variables.getUpperBounds().clone();
+			}
+			upperBounds[x] = upper;
+			
+			return this;
+		}
+		
+		/**
+		 * Changes the type of a constraint
+		 *
+		 * @param	c	Zero-based index of the constraint
+		 * @param	type	New type
+		 * @return	ProblemModifier with the changed type
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemModifier setRowType(int c, ConstraintType type) {
+			
+			if(rowTypes == null) {
+				rowTypes = base.rowTypes.clone();
+			}
+			rowTypes[c] = type;
+			
+			return this;
+		}
+		
+		/**
+		 * Changes the free term of a constraint
+		 *
+		 * @param	c	Zero-based index of the constraint
+		 * @param	free	New free term
+		 * @return	ProblemModifier with the changed free term
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemModifier setFreeTerm(int c, double free) {
+			
+			if(freeTerms == null) {
+				freeTerms = base.freeTerms.clone();
+			}
+			freeTerms[c] = free;
+			
+			return this;
+		}
+		
+		/**
+		 * Changes the range of a constraint
+		 *
+		 * @param	c	Zero-based index of the constraint
+		 * @param	range	New range, or zero for none
+		 * @return	ProblemModifier with the changed range
+		 * 
+		 * @since	2.1.0
+		 */
+		public ProblemModifier setRange(int c, double range) {
+			
+			if(ranges == null) {
+				ranges = base.ranges.clone();
+			}
+			ranges[c] = range;
+			
+			return this;
+		}
+		
+		/**
+		 * Returns a Problem object with the changes made since
+		 * the previous call, or since the builder was created.
+		 * Later changes are applied over the returned problem
+		 * 
+		 * @return	LP problem
+		 * 
+		 * @since	2.1.0
+		 */
+		public Problem build() {
+			
+			Problem lp = new Problem();
+			
+			VariableTable variables = base.variables;
+			if(objCoeffs != null || lowerBounds != null || upperBounds != null) {
+				variables = new VariableTable(
+					objCoeffs != null ? objCoeffs : variables.getObjCoeffs(),
+					lowerBounds != null ? lowerBounds : variables.getLowerBounds(),
+					upperBounds != null ? upperBounds : variables.getUpperBounds(),
+					variables.getIntegers()
+				);
+			} else {
+				lp.columns = base.columns;
+			}
+			lp.setVariables(variables);
+			lp.setMatrix(base.matrix);
+			lp.columnMatrix = base.columnMatrix;
+			lp.setRowTypes(rowTypes != null ? rowTypes : base.rowTypes);
+			lp.setFreeTerms(freeTerms != null ? freeTerms : base.freeTerms);
+			lp.setRanges(ranges != null ? ranges : base.ranges);
+			if(rowTypes == null && freeTerms == null && ranges == null) {
+				lp.rows = base.rows;
+			}
+			
+			base = lp;
+			objCoeffs = lowerBounds = upperBounds = freeTerms = ranges = null;
+			rowTypes = null;
 			
 			return lp;
 		}
@@ -113,20 +655,155 @@ public class Problem {
 	private Problem() {
 	}
 	
+	/**
+	 * Returns the variables of the problem. They are
+	 * materialized from the columnar storage the first time
+	 * this method is called
+	 * 
+	 * @return	variables of the problem
+	 * 
+	 * @since	1.0.0
+	 */
 	public Variable[] getColumns() {
+		
+		Variable columns[] = this.columns;
+		if(columns == null) {
+			columns = variables.toVariables();
+			this.columns = columns;
+		}
+		
 		return columns;
 	}
 	
-	private void setColumns(Variable[] columns) {
-		this.columns = columns;
+	/**
+	 * Returns the variables of the problem in columnar storage
+	 * 
+	 * @return	properties of the variables
+	 * 
+	 * @since	2.1.0
+	 */
+	public VariableTable getVariables() {
+		return variables;
+	}
+	
+	private void setVariables(VariableTable variables) {
+		this.variables = variables;
 	}
 	
+	/**
+	 * Returns the constraints of the problem. They are
+	 * materialized from the sparse storage the first time
+	 * this method is called
+	 * 
+	 * @return	constraints of the problem
+	 * 
+	 * @since	1.0.0
+	 */
 	public Constraint[] getRows() {
+		
+		Constraint rows[] = this.rows;
+		if(rows == null) {
+			int starts[] = matrix.getStarts();
+			rows = new Constraint[rowTypes.length];
+			for(int c = 0; c < rows.length; c++) {
+				rows[c] = Constraint.create(
+					Arrays.copyOfRange(matrix.getIndices(), starts[c], starts[c+1]),
+					Arrays.copyOfRange(matrix.getValues(), starts[c], starts[c+1]),
+					matrix.getMinorDimension(), rowTypes[c], freeTerms[c], ranges[c]
+				);
+			}
+			this.rows = rows;
+		}
+		
 		return rows;
 	}
 	
-	private void setRows(Constraint rows[]) {
-		this.rows = rows;
+	/**
+	 * Returns the constraint matrix in row-major
+	 * compressed sparse storage
+	 * 
+	 * @return	coefficients of the constraints
+	 * 
+	 * @since	2.1.0
+	 */
+	public SparseMatrix getMatrix() {
+		return matrix;
+	}
+	
+	private void setMatrix(SparseMatrix matrix) {
+		this.matrix = matrix;
+	}
+	
+	/**
+	 * Returns the constraint matrix in column-major
+	 * compressed sparse storage, with the nonzeros of each
+	 * column sorted by row. It is built from the row-major
+	 * matrix the first time this method is called
+	 * 
+	 * @return	coefficients of the variables
+	 * 
+	 * @since	2.1.0
+	 */
+	public SparseMatrix getColumnMatrix() {
+		
+		SparseMatrix columnMatrix = this.columnMatrix;
+		if(columnMatrix == null) {
+			columnMatrix = matrix.transpose();
+			this.columnMatrix = columnMatrix;
+		}
+		
+		return columnMatrix;
+	}
+	
+	public ConstraintType[] getRowTypes() {
+		return rowTypes;
+	}
+	
+	private void setRowTypes(ConstraintType rowTypes[]) {
+		this.rowTypes = rowTypes;
+	}
+	
+	public double[] getFreeTerms() {
+		return freeTerms;
+	}
+	
+	private void setFreeTerms(double freeTerms[]) {
+		this.freeTerms = freeTerms;
+	}
+	
+	/**
+	 * Returns the range of each constraint, with the meaning of
+	 * {@link Constraint#getRange()}, zero for those with no range
+	 * 
+	 * @return	ranges of the constraints
+	 * 
+	 * @since	2.1.0
+	 */
+	public double[] getRanges() {
+		return ranges;
+	}
+	
+	/**
+	 * Returns whether any constraint has a range, so that the
+	 * MPS file has a RANGES section
+	 * 
+	 * @return	whether there are ranged constraints
+	 * 
+	 * @since	2.1.0
+	 */
+	public boolean hasRanges() {
+		
+		for(double range : ranges) {
+			if(range != 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void setRanges(double ranges[]) {
+		this.ranges = ranges;
 	}
 	
 }
\ No newline at end of file
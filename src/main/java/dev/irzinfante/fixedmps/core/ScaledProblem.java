@@ -0,0 +1,264 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import dev.irzinfante.fixedmps.core.Problem.ProblemBuilder;
+
+/**
+ * Equilibrated version of a problem, with its constraints and
+ * variables scaled so that the magnitudes of the coefficients
+ * are close to one, and fewer of them are clamped when the file
+ * is written. Constraint {@code c} is multiplied by
+ * {@code rowScales[c]} and variable {@code x} is replaced by
+ * {@code x / columnScales[x]}, so the objective value is the same
+ * in both problems. Each pass divides every row and then every
+ * column by the geometric mean of its smallest and largest
+ * magnitudes, in time proportional to the number of nonzeros,
+ * until the range of magnitudes stops improving or for at most
+ * {@value #MAX_PASSES} passes. Integer variables are not scaled
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class ScaledProblem {
+	
+	private static final int MAX_PASSES = 8;
+	private static final double MIN_IMPROVEMENT = 0.9;
+	
+	private Problem problem;
+	private double rowScales[];
+	private double columnScales[];
+	
+	private ScaledProblem() {
+	}
+	
+	/**
+	 * Scales a problem by powers of two, which is left unchanged.
+	 * Powers of two change only the exponents of the numbers, so
+	 * scaling them adds no rounding errors
+	 *
+	 * @param	original	The LP problem to scale
+	 * @return	scaled problem and scale factors
+	 * 
+	 * @since	2.1.0
+	 */
+	public static ScaledProblem scale(Problem original) {
+		
+		return scale(original, true);
+	}
+	
+	/**
+	 * Scales a problem, which is left unchanged
+	 *
+	 * @param	original	The LP problem to scale
+	 * @param	powersOfTwo	Whether the scale factors are rounded to powers of two
+	 * @return	scaled problem and scale factors
+	 * 
+	 * @since	2.1.0
+	 */
+	public static ScaledProblem scale(Problem original, boolean powersOfTwo) {
+		
+		SparseMatrix matrix = original.getMatrix();
+		int starts[] = matrix.getStarts();
+		int indices[] = matrix.getIndices();
+		double values[] = matrix.getValues();
+		VariableTable variables = original.getVariables();
+		int numRows = original.getRowTypes().length;
+		int numColumns = variables.size();
+		
+		double rowScales[] = new double[numRows];
+		double columnScales[] = new double[numColumns];
+		Arrays.fill(rowScales, 1);
+		Arrays.fill(columnScales, 1);
+		double columnMin[] = new double[numColumns];
+		double columnMax[] = new double[numColumns];
+		
+		double range = Double.POSITIVE_INFINITY;
+		for(int pass = 0; pass < MAX_PASSES; pass++) {
+			double min = Double.POSITIVE_INFINITY, max = 0;
+			for(int c = 0; c < numRows; c++) {
+				double rowMin = Double.POSITIVE_INFINITY, rowMax = 0;
+				for(int k = starts[c]; k < starts[c+1]; k++) {
+					double magnitude = Math.abs(values[k]) * columnScales[indices[k]];
+					rowMin = Math.min(rowMin, magnitude);
+					rowMax = Math.max(rowMax, magnitude);
+				}
+				if(rowMax > 0) {
+					rowScales[c] = factor(rowMin, rowMax);
+					min = Math.min(min, rowMin * rowScales[c]);
+					max = Math.max(max, rowMax * rowScales[c]);
+				}
+			}
+			if(max == 0 || max / min > MIN_IMPROVEMENT * range) {
+				break;
+			}
+			range = max / min;
+			
+			Arrays.fill(columnMin, Double.POSITIVE_INFINITY);
+			Arrays.fill(columnMax, 0);
+			for(int c = 0; c < numRows; c++) {
+				for(int k = starts[c]; k < starts[c+1]; k++) {
+					double magnitude = Math.abs(values[k]) * rowScales[c];
+					columnMin[indices[k]] = Math.min(columnMin[indices[k]], magnitude);
+					columnMax[indices[k]] = Math.max(columnMax[indices[k]], magnitude);
+				}
+			}
+			for(int x = 0; x < numColumns; x++) {
+				if(columnMax[x] > 0 && !variables.isInteger(x)) {
+					columnScales[x] = factor(columnMin[x], columnMax[x]);
+				}
+			}
+		}
+		
+		if(powersOfTwo) {
+			for(int c = 0; c < numRows; c++) {
+				rowScales[c] = powerOfTwo(rowScales[c]);
+			}
+			for(int x = 0; x < numColumns; x++) {
+				columnScales[x] = powerOfTwo(columnScales[x]);
+			}
+		}
+		
+		double scaledValues[] = new double[starts[numRows]];
+		double freeTerms[] = new double[numRows];
+		for(int c = 0; c < numRows; c++) {
+			for(int k = starts[c]; k < starts[c+1]; k++) {
+				scaledValues[k] = values[k] * rowScales[c] * columnScales[indices[k]];
+			}
+			freeTerms[c] = original.getFreeTerms()[c] * rowScales[c];
+		}
+		
+		double objCoeffs[] = new double[numColumns];
+		double lowerBounds[] = new double[numColumns];
+		double upperBounds[] = new double[numColumns];
+		for(int x = 0; x < numColumns; x++) {
+			objCoeffs[x] = variables.getObjCoeffs()[x] * columnScales[x];
+			lowerBounds[x] = unbounded(variables.getLowerBounds()[x]) ? variables.getLowerBounds()[x] : variables.getLowerBounds()[x] / columnScales[x];
+			upperBounds[x] = unbounded(variables.getUpperBounds()[x]) ? variables.getUpperBounds()[x] : variables.getUpperBounds()[x] / columnScales[x];
+		}
+		
+		ProblemBuilder builder = new ProblemBuilder(new VariableTable(objCoeffs, lowerBounds, upperBounds, (BitSet) variables.getIntegers().clone()))
+			.addConstraintsCSR(starts.clone(), indices.clone(), scaledValues, original.getRowTypes().clone(), freeTerms, true);
+		for(int c = 0; c < numRows; c++) {
+			if(original.getRanges()[c] != 0) {
+				builder.setRange(c, original.getRanges()[c] * rowScales[c]);
+			}
+		}
+		
+		ScaledProblem scaled = new ScaledProblem();
+		scaled.problem = builder.build();
+		scaled.rowScales = rowScales;
+		scaled.columnScales = columnScales;
+		
+		return scaled;
+	}
+	
+	/**
+	 * Returns the scaled problem
+	 * 
+	 * @return	LP problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public Problem getProblem() {
+		return problem;
+	}
+	
+	public double[] getRowScales() {
+		return rowScales;
+	}
+	
+	public double[] getColumnScales() {
+		return columnScales;
+	}
+	
+	/**
+	 * Returns the values of the variables of the original problem
+	 * from the values of the variables of the scaled problem
+	 * 
+	 * @param	solution	Values of the variables of the scaled problem
+	 * @return	values of the variables of the original problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public double[] unscale(double solution[]) {
+		
+		if(solution.length != columnScales.length) {
+			throw new IllegalArgumentException("There must be a value for each variable of the scaled problem");
+		}
+		
+		double values[] = new double[solution.length];
+		for(int x = 0; x < values.length; x++) {
+			values[x] = solution[x] * columnScales[x];
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Returns the dual values of the constraints of the original
+	 * problem from the dual values of the constraints of the
+	 * scaled problem
+	 * 
+	 * @param	duals	Dual values of the constraints of the scaled problem
+	 * @return	dual values of the constraints of the original problem
+	 * 
+	 * @since	2.1.0
+	 */
+	public double[] unscaleDuals(double duals[]) {
+		
+		if(duals.length != rowScales.length) {
+			throw new IllegalArgumentException("There must be a dual value for each constraint of the scaled problem");
+		}
+		
+		double values[] = new double[duals.length];
+		for(int c = 0; c < values.length; c++) {
+			values[c] = duals[c] * rowScales[c];
+		}
+		
+		return values;
+	}
+	
+	/*
+	 * Inverse of the geometric mean, with the square roots taken
+	 * first so that the product cannot overflow or underflow
+	 */
+	private static double factor(double min, double max) {
+		return 1 / (Math.sqrt(min) * Math.sqrt(max));
+	}
+	
+	/*
+	 * Rounds to the nearest power of two in logarithmic scale
+	 */
+	private static double powerOfTwo(double scale) {
+		return Math.scalb(1.0, Math.getExponent(scale * Math.sqrt(2)));
+	}
+	
+	/*
+	 * Infinite bounds are written as the largest double
+	 */
+	private static boolean unbounded(double bound) {
+		return Math.abs(bound) >= Double.MAX_VALUE;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+/**
+ * Compressed sparse storage of the constraint matrix. The
+ * nonzeros of the major vector {@code i} are stored in
+ * positions {@code starts[i]} to {@code starts[i+1]-1} of the
+ * indices and values arrays, sorted by minor index
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class SparseMatrix {
+	
+	private int starts[];
+	private int indices[];
+	private double values[];
+	private int minorDimension;
+	
+	SparseMatrix(int starts[], int indices[], double values[], int minorDimension) {
+		
+		this.starts = starts;
+		this.indices = indices;
+		this.values = values;
+		this.minorDimension = minorDimension;
+	}
+	
+	/**
+	 * Returns the number of major vectors, that is,
+	 * rows in row-major storage
+	 * 
+	 * @return	major dimension of the matrix
+	 * 
+	 * @since	2.1.0
+	 */
+	public int getMajorDimension() {
+		return starts.length - 1;
+	}
+	
+	/**
+	 * Returns the size of each major vector, that is,
+	 * number of columns in row-major storage
+	 * 
+	 * @return	minor dimension of the matrix
+	 * 
+	 * @since	2.1.0
+	 */
+	public int getMinorDimension() {
+		return minorDimension;
+	}
+	
+	/**
+	 * Returns the number of stored nonzeros
+	 * 
+	 * @return	number of nonzeros of the matrix
+	 * 
+	 * @since	2.1.0
+	 */
+	public int getNonzeros() {
+		return starts[starts.length - 1];
+	}
+	
+	/**
+	 * Creates the same matrix in the opposite orientation, turning
+	 * row-major storage into column-major storage and vice versa. The
+	 * nonzeros of each new major vector keep the order of the old
+	 * major vectors. It takes time proportional to the number of
+	 * nonzeros and both dimensions
+	 * 
+	 * @return	transposed matrix
+	 * 
+	 * @since	2.1.0
+	 */
+	public SparseMatrix transpose() {
+		
+		int nonzeros = getNonzeros();
+		int transStarts[] = new int[minorDimension + 1];
+		int transIndices[] = new int[nonzeros];
+		double transValues[] = new double[nonzeros];
+		
+		for(int k = 0; k < nonzeros; k++) {
+			transStarts[indices[k] + 1]++;
+		}
+		for(int j = 0; j < minorDimension; j++) {
+			transStarts[j + 1] += transStarts[j];
+		}
+		
+		int next[] = new int[minorDimension];
+		System.arraycopy(transStarts, 0, next, 0, minorDimension);
+		for(int i = 0; i < starts.length - 1; i++) {
+			for(int k = starts[i]; k < starts[i+1]; k++) {
+				int position = next[indices[k]]++;
+				transIndices[position] = i;
+				transValues[position] = values[k];
+			}
+		}
+		
+		return new SparseMatrix(transStarts, transIndices, transValues, starts.length - 1);
+	}
+	
+	public int[] getStarts() {
+		return starts;
+	}
+	
+	public int[] getIndices() {
+		return indices;
+	}
+	
+	public double[] getValues() {
+		return values;
+	}
+	
+}
\ No newline at end of file
@@ -99,7 +99,8 @@ public class Variable {
 		}
 		
 		/**
-		 * Sets the upper bound of the variable
+		 * Sets the upper bound of the variable. An infinite
+		 * value removes the upper bound
 		 * 
 		 * @param	upper	Value of the upper bound
 		 * @return VarBuilder for an upper-bounded variable
@@ -108,14 +109,15 @@ public class Variable {
 		 */
 		public VarBuilder upperBound(double upper) {
 			
-			this.upperBound = upper;
+			this.upperBound = Math.min(upper, Double.MAX_VALUE);
 			
 			return this;
 		}
 		
 		
 		/**
-		 * Sets the lower bound of the variable
+		 * Sets the lower bound of the variable. An infinite
+		 * value removes the lower bound
 		 * 
 		 * @param	lower	Value of the lower bound
 		 * @return	VarBuilder for a lower-bounded variable
@@ -124,11 +126,49 @@ public class Variable {
 		 */
 		public VarBuilder lowerBound(double lower) {
 			
-			this.lowerBound = lower;
+			this.lowerBound = Math.max(lower, -Double.MAX_VALUE);
 			
 			return this;
 		}
 		
+		/**
+		 * Removes the upper bound of the variable, which is
+		 * the default for real variables
+		 * 
+		 * @return	VarBuilder for a variable with no upper bound
+		 * 
+		 * @since	2.1.0
+		 */
+		public VarBuilder noUpperBound() {
+			
+			return upperBound(Double.POSITIVE_INFINITY);
+		}
+		
+		/**
+		 * Removes the lower bound of the variable, so that it
+		 * can take any negative value
+		 * 
+		 * @return	VarBuilder for a variable with no lower bound
+		 * 
+		 * @since	2.1.0
+		 */
+		public VarBuilder noLowerBound() {
+			
+			return lowerBound(Double.NEGATIVE_INFINITY);
+		}
+		
+		/**
+		 * Removes both bounds of the variable
+		 * 
+		 * @return	VarBuilder for a free variable
+		 * 
+		 * @since	2.1.0
+		 */
+		public VarBuilder free() {
+			
+			return noLowerBound().noUpperBound();
+		}
+		
 		
 		/**
 		 * Returns the Variable object created
@@ -0,0 +1,136 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar storage of the variables of a problem, with
+ * one array for each of their properties
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class VariableTable {
+	
+	private double objCoeffs[];
+	private double lowerBounds[];
+	private double upperBounds[];
+	private BitSet integers;
+	
+	/**
+	 * Initializes a table from the properties of the variables in
+	 * bulk. The arrays are not copied, and they must not be
+	 * modified afterwards
+	 *
+	 * @param	objCoeffs	Coefficients of the variables in the objective function
+	 * @param	lowerBounds	Lower bounds of the variables, or null for zero
+	 * @param	upperBounds	Upper bounds of the variables, or null for no bound
+	 * @param	integers	Set of integer variables, or null for none
+	 * 
+	 * @since	2.1.0
+	 */
+	public VariableTable(double objCoeffs[], double lowerBounds[], double upperBounds[], BitSet integers) {
+		
+		if((lowerBounds != null && lowerBounds.length != objCoeffs.length)
+			||	(upperBounds != null && upperBounds.length != objCoeffs.length)) {
+			
+			throw new IllegalArgumentException("There must be as many bounds as variables");
+		}
+		
+		this.objCoeffs = objCoeffs;
+		this.lowerBounds = lowerBounds != null ? lowerBounds : new double[objCoeffs.length];
+		this.upperBounds = upperBounds != null ? upperBounds : new double[objCoeffs.length];
+		this.integers = integers != null ? integers : new BitSet();
+		if(upperBounds == null) {
+			Arrays.fill(this.upperBounds, Double.MAX_VALUE);
+		}
+	}
+	
+	/**
+	 * Creates a table with the properties of the variables
+	 *
+	 * @param	variables	Variables of the problem
+	 * @return	columnar storage of the variables
+	 * 
+	 * @since	2.1.0
+	 */
+	public static VariableTable of(Variable ... variables) {
+		
+		double objCoeffs[] = new double[variables.length];
+		double lowerBounds[] = new double[variables.length];
+		double upperBounds[] = new double[variables.length];
+		BitSet integers = new BitSet(variables.length);
+		for(int x = 0; x < variables.length; x++) {
+			objCoeffs[x] = variables[x].getObjCoeff();
+			lowerBounds[x] = variables[x].getLowerBound();
+			upperBounds[x] = variables[x].getUpperBound();
+			integers.set(x, variables[x].isInteger());
+		}
+		
+		return new VariableTable(objCoeffs, lowerBounds, upperBounds, integers);
+	}
+	
+	Variable[] toVariables() {
+		
+		Variable variables[] = new Variable[objCoeffs.length];
+		for(int x = 0; x < variables.length; x++) {
+			Variable.VarBuilder builder = new Variable.VarBuilder(objCoeffs[x])
+				.lowerBound(lowerBounds[x])
+				.upperBound(upperBounds[x]);
+			variables[x] = integers.get(x) ? builder.integer().build() : builder.build();
+		}
+		
+		return variables;
+	}
+	
+	/**
+	 * Returns the number of variables
+	 * 
+	 * @return	number of variables
+	 * 
+	 * @since	2.1.0
+	 */
+	public int size() {
+		return objCoeffs.length;
+	}
+	
+	public double[] getObjCoeffs() {
+		return objCoeffs;
+	}
+	
+	public double[] getLowerBounds() {
+		return lowerBounds;
+	}
+	
+	public double[] getUpperBounds() {
+		return upperBounds;
+	}
+	
+	public BitSet getIntegers() {
+		return integers;
+	}
+	
+	public boolean isInteger(int x) {
+		return integers.get(x);
+	}
+	
+}
\ No newline at end of file
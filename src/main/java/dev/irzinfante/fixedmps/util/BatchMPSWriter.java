@@ -0,0 +1,272 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import dev.irzinfante.fixedmps.core.Problem;
+
+/**
+ * Writes many MPS files concurrently, each one on its own virtual
+ * thread, so that the latency of file I/O is overlapped. The number
+ * of files being written at once is limited, and so is the memory
+ * they are estimated to need. The items are taken lazily from their
+ * source as the earlier ones are done. A failure to write a file
+ * does not stop the batch, and is reported in its results, and
+ * the partially written file is deleted
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class BatchMPSWriter {
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int UNIT = 1 << 10;
+	
+	private int concurrency;
+	private long memoryBudget;
+	
+	/**
+	 * @author      irzinfante iker@irzinfante.dev
+	 * @since       2.1.0
+	 */
+	public static class BatchMPSWriterBuilder {
+		
+		private int concurrency;
+		private long memoryBudget;
+		
+		/**
+		 * Initializes a BatchMPSWriter object builder, with four
+		 * files per processor at once and a quarter of the
+		 * maximum heap size as memory budget
+		 * 
+		 * @since	2.1.0
+		 */
+		public BatchMPSWriterBuilder() {
+			
+			this.concurrency = 4 * Runtime.getRuntime().availableProcessors();
+			this.memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+		}
+		
+		/**
+		 * Sets the maximum number of files written at once
+		 * 
+		 * @param	concurrency	Number of files, at least one
+		 * @return	BatchMPSWriterBuilder with the concurrency limit
+		 * 
+		 * @since	2.1.0
+		 */
+		public BatchMPSWriterBuilder concurrency(int concurrency) {
+			
+			if(concurrency < 1) {
+				throw new IllegalArgumentException("At least one file must be written at once");
+			}
+			this.concurrency = concurrency;
+			
+			return this;
+		}
+		
+		/**
+		 * Sets the memory that the files written at once may need,
+		 * estimated from the size of their problems. A file that needs
+		 * more than the whole budget is written alone
+		 * 
+		 * @param	memoryBudget	Bytes of memory
+		 * @return	BatchMPSWriterBuilder with the memory budget
+		 * 
+		 * @since	2.1.0
+		 */
+		public BatchMPSWriterBuilder memoryBudget(long memoryBudget) {
+			
+			this.memoryBudget = memoryBudget;
+			
+			return this;
+		}
+		
+		/**
+		 * Returns the BatchMPSWriter object created
+		 * 
+		 * @return	batch writer
+		 * 
+		 * @since	2.1.0
+		 */
+		public BatchMPSWriter build() {
+			
+			BatchMPSWriter writer = new BatchMPSWriter();
+			
+			writer.concurrency = this.concurrency;
+			writer.memoryBudget = this.memoryBudget;
+			
+			return writer;
+		}
+		
+	}
+	
+	private BatchMPSWriter() {
+	}
+	
+	/**
+	 * Writes the MPS file of each problem to its path, creating
+	 * or truncating it, and waits for all of them
+	 *
+	 * @param	items	Pairs of problem and path of its MPS file
+	 * @return	results of the batch
+	 * @throws	InterruptedException	If the thread is interrupted while waiting.
+	 * The files already started are finished before it is thrown
+	 * @since	2.1.0
+	 */
+	public BatchStats write(Stream<? extends Map.Entry<Problem, Path>> items) throws InterruptedException {
+		
+		return write(items.iterator());
+	}
+	
+	/**
+	 * Writes the MPS file of each problem to its path, creating
+	 * or truncating it, and waits for all of them
+	 *
+	 * @param	items	Pairs of problem and path of its MPS file
+	 * @return	results of the batch
+	 * @throws	InterruptedException	If the thread is interrupted while waiting.
+	 * The files already started are finished before it is thrown
+	 * @since	2.1.0
+	 */
+	public BatchStats write(Iterable<? extends Map.Entry<Problem, Path>> items) throws InterruptedException {
+		
+		return write(items.iterator());
+	}
+	
+	private BatchStats write(Iterator<? extends Map.Entry<Problem, Path>> items) throws InterruptedException {
+		
+		int budget = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / UNIT));
+		Semaphore running = new Semaphore(concurrency);
+		Semaphore memory = new Semaphore(budget);
+		// Not a ConcurrentHashMap, as the error of an item with no path has a null key
+		Map<Path, Throwable> errors = Collections.synchronizedMap(new HashMap<>());
+		AtomicLong succeeded = new AtomicLong();
+		AtomicLong failed = new AtomicLong();
+		AtomicLong bytes = new AtomicLong();
+		long count = 0;
+		
+		long start = System.nanoTime();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			while(items.hasNext()) {
+				Map.Entry<Problem, Path> item = items.next();
+				count++;
+				if(item == null || item.getKey() == null || item.getValue() == null) {
+					errors.put(item == null ? null : item.getValue(),
+						new IllegalArgumentException(item == null ? "Null item" : item.getKey() == null ? "Null problem" : "Null path"));
+					failed.incrementAndGet();
+					continue;
+				}
+				Problem problem = item.getKey();
+				Path path = item.getValue();
+				int units = (int) Math.min(budget, estimate(problem) / UNIT + 1);
+				
+				running.acquire();
+				try {
+					memory.acquire(units);
+				} catch (InterruptedException e) {
+					running.release();
+					throw e;
+				}
+				executor.execute(() -> {
+					boolean created = false;
+					try {
+						CountingOutputStream out = new CountingOutputStream(Files.newOutputStream(path));
+						created = true;
+						try (out) {
+							MPSUtil.writeMPS(problem, out);
+						}
+						bytes.addAndGet(out.count);
+						succeeded.incrementAndGet();
+					} catch (Throwable e) {
+						// A partially written file must not be taken as output
+						if(created) {
+							try {
+								Files.deleteIfExists(path);
+							} catch (IOException | RuntimeException suppressed) {
+								e.addSuppressed(suppressed);
+							}
+						}
+						errors.put(path, e);
+						failed.incrementAndGet();
+					} finally {
+						memory.release(units);
+						running.release();
+					}
+				});
+			}
+		}
+		
+		return new BatchStats(count, succeeded.get(), failed.get(), bytes.get(), System.nanoTime() - start, errors);
+	}
+	
+	/*
+	 * Memory needed to write the MPS file of a problem: the buffer of
+	 * the writer and the column-major copy of the matrix
+	 */
+	private static long estimate(Problem problem) {
+		
+		long nonzeros = problem.getMatrix().getNonzeros();
+		
+		return BUFFER_SIZE + (Integer.BYTES + Double.BYTES) * nonzeros + Integer.BYTES * (problem.getVariables().size() + 1L);
+	}
+	
+	/*
+	 * Counts the bytes written to a stream
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		
+		private long count;
+		
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			
+			out.write(b);
+			count++;
+		}
+		
+		@Override
+		public void write(byte b[], int off, int len) throws IOException {
+			
+			out.write(b, off, len);
+			count += len;
+		}
+		
+	}
+	
+}
\ No newline at end of file
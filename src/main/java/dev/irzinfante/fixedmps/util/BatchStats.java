@@ -0,0 +1,118 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Aggregate results of writing a batch of MPS files
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class BatchStats {
+	
+	private long items;
+	private long succeeded;
+	private long failed;
+	private long bytes;
+	private long elapsedNanos;
+	private Map<Path, Throwable> errors;
+	
+	BatchStats(long items, long succeeded, long failed, long bytes, long elapsedNanos, Map<Path, Throwable> errors) {
+		
+		this.items = items;
+		this.succeeded = succeeded;
+		this.failed = failed;
+		this.bytes = bytes;
+		this.elapsedNanos = elapsedNanos;
+		this.errors = Collections.unmodifiableMap(errors);
+	}
+	
+	public long getItems() {
+		return items;
+	}
+	
+	public long getSucceeded() {
+		return succeeded;
+	}
+	
+	public long getFailed() {
+		return failed;
+	}
+	
+	/**
+	 * Returns the number of bytes written to the
+	 * files that were written successfully
+	 * 
+	 * @return	bytes written
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * Returns the number of files written successfully per second
+	 * 
+	 * @return	files per second
+	 * 
+	 * @since	2.1.0
+	 */
+	public double getFilesPerSecond() {
+		return elapsedNanos > 0 ? getSucceeded() * 1e9 / elapsedNanos : 0;
+	}
+	
+	/**
+	 * Returns the number of megabytes (10^6 bytes)
+	 * written per second
+	 * 
+	 * @return	megabytes per second
+	 * 
+	 * @since	2.1.0
+	 */
+	public double getMegabytesPerSecond() {
+		return elapsedNanos > 0 ? bytes * 1e3 / elapsedNanos : 0;
+	}
+	
+	/**
+	 * Returns the error of each file that could not be written,
+	 * which is deleted if it was created. Items with no problem or
+	 * no path are errors too, those with
+	 * no path under the null key. If several failed items have the
+	 * same path, only one of their errors is kept, but all of them
+	 * are counted in {@link #getFailed()}
+	 * 
+	 * @return	errors by path of the file
+	 * 
+	 * @since	2.1.0
+	 */
+	public Map<Path, Throwable> getErrors() {
+		return errors;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,197 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import dev.irzinfante.fixedmps.constant.Section;
+
+/**
+ * Measurements of the generation of a MPS file: its size, the
+ * bytes and time of each section, and how many numbers were
+ * clamped to the range of magnitudes that the format can hold
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class EmissionStats {
+	
+	private int rows;
+	private int columns;
+	private long nonzeros;
+	private long sectionBytes[];
+	private long sectionNanos[];
+	private long transposeNanos;
+	private long outputNanos;
+	private long clampedAbove;
+	private long clampedBelow;
+	
+	EmissionStats(int rows, int columns, long nonzeros) {
+		
+		this.rows = rows;
+		this.columns = columns;
+		this.nonzeros = nonzeros;
+		this.sectionBytes = new long[Section.values().length];
+		this.sectionNanos = new long[Section.values().length];
+	}
+	
+	void section(Section section, long bytes, long nanos) {
+		
+		sectionBytes[section.ordinal()] = bytes;
+		sectionNanos[section.ordinal()] = nanos;
+	}
+	
+	void setTransposeNanos(long transposeNanos) {
+		this.transposeNanos = transposeNanos;
+	}
+	
+	void setOutputNanos(long outputNanos) {
+		this.outputNanos = outputNanos;
+	}
+	
+	/*
+	 * Counts a number written to the file if its magnitude is
+	 * out of [1e-10, 1e10]. Zeros are written as they are
+	 */
+	void count(double value) {
+		
+		double clamped = MPSFormatter.bound(value);
+		if(clamped != value && !Double.isNaN(value)) {
+			if(Math.abs(value) > Math.abs(clamped)) {
+				clampedAbove++;
+			} else {
+				clampedBelow++;
+			}
+		}
+	}
+	
+	public int getRows() {
+		return rows;
+	}
+	
+	public int getColumns() {
+		return columns;
+	}
+	
+	public long getNonzeros() {
+		return nonzeros;
+	}
+	
+	/**
+	 * Returns the size of the MPS file
+	 * 
+	 * @return	bytes written
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getBytes() {
+		
+		long bytes = 0;
+		for(long section : sectionBytes) {
+			bytes += section;
+		}
+		
+		return bytes;
+	}
+	
+	public long getBytes(Section section) {
+		return sectionBytes[section.ordinal()];
+	}
+	
+	/**
+	 * Returns the time spent writing the MPS file, from
+	 * the NAME line to the ENDATA line
+	 * 
+	 * @return	elapsed time in nanoseconds
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getElapsedNanos() {
+		
+		long nanos = 0;
+		for(long section : sectionNanos) {
+			nanos += section;
+		}
+		
+		return nanos;
+	}
+	
+	/**
+	 * Returns the time spent writing a section, including
+	 * its output and, for the COLUMNS section, the creation
+	 * of the column-major matrix
+	 * 
+	 * @param	section	Section of the MPS file
+	 * @return	elapsed time in nanoseconds
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getElapsedNanos(Section section) {
+		return sectionNanos[section.ordinal()];
+	}
+	
+	/**
+	 * Returns the time spent creating the column-major
+	 * matrix, which is zero if it had already been created
+	 * 
+	 * @return	elapsed time in nanoseconds
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getTransposeNanos() {
+		return transposeNanos;
+	}
+	
+	/**
+	 * Returns the time spent in the output stream, writing
+	 * the formatted bytes and flushing them
+	 * 
+	 * @return	elapsed time in nanoseconds
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getOutputNanos() {
+		return outputNanos;
+	}
+	
+	/**
+	 * Returns the number of coefficients, free terms and bounds
+	 * whose magnitude was over 1e10, and were written as 1e10
+	 * 
+	 * @return	numbers clamped to 1e10
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getClampedAbove() {
+		return clampedAbove;
+	}
+	
+	/**
+	 * Returns the number of nonzero coefficients, free terms and
+	 * bounds whose magnitude was under 1e-10, and were written
+	 * as 1e-10
+	 * 
+	 * @return	numbers clamped to 1e-10
+	 * 
+	 * @since	2.1.0
+	 */
+	public long getClampedBelow() {
+		return clampedBelow;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of the generation of a MPS file. It
+ * is disabled unless enabled in the recording settings
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+@Name("dev.irzinfante.fixedmps.Emit")
+@Label("MPS Emission")
+@Category("Fixed MPS")
+@Description("Generation of a MPS file")
+final class EmitEvent extends jdk.jfr.Event {
+	
+	@Label("Rows")
+	int rows;
+	
+	@Label("Columns")
+	int columns;
+	
+	@Label("Nonzeros")
+	long nonzeros;
+	
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+	
+}
\ No newline at end of file
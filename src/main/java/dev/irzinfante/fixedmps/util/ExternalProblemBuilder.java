@@ -0,0 +1,497 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+import dev.irzinfante.fixedmps.core.Constraint;
+import dev.irzinfante.fixedmps.core.Variable;
+import dev.irzinfante.fixedmps.core.VariableTable;
+
+/**
+ * Builds problems too big to be held in memory and writes
+ * them as MPS files. The nonzeros of the constraints are kept
+ * in memory, in column order, until they reach the memory budget;
+ * then they are sorted and spilled to a temporary run file. The
+ * types, free terms and ranges of the constraints are streamed to another
+ * temporary file. When the MPS file is written, the runs are merged
+ * to stream the COLUMNS section, so the memory used does not depend
+ * on the number of constraints or nonzeros. At most {@value #MAX_FAN_IN}
+ * runs are merged at once; with more, the oldest ones are first merged
+ * into longer runs, in as many passes as needed. The variables are held
+ * in memory, in columnar storage. The temporary files are deleted
+ * on {@link #close()}
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class ExternalProblemBuilder implements Closeable {
+	
+	private static final int ENTRY_SIZE = Long.BYTES + Double.BYTES;
+	private static final int MIN_ENTRIES = 1024;
+	private static final int MIN_BUFFER = 1 << 12;
+	private static final int MAX_BUFFER = 1 << 16;
+	private static final int MAX_FAN_IN = 64;
+	
+	private VariableTable variables;
+	private int order[];
+	private int position[];
+	private int numIntegers;
+	
+	private Path directory;
+	private long memoryBudget;
+	private int capacity;
+	private long keys[];
+	private double values[];
+	private int size;
+	private List<Path> runs;
+	
+	private Path rowsFile;
+	private DataOutputStream rows;
+	private int numRows;
+	private int numRanges;
+	
+	/**
+	 * Initializes a builder with temporary files in the
+	 * default temporary-file directory
+	 *
+	 * @param	memoryBudget	Bytes of nonzeros held in memory before spilling them to disk
+	 * @param	variables	Variables of the problem
+	 * @throws	IOException	If the temporary file cannot be created
+	 * 
+	 * @since	2.1.0
+	 */
+	public ExternalProblemBuilder(long memoryBudget, Variable ... variables) throws IOException {
+		this(null, memoryBudget, variables);
+	}
+	
+	/**
+	 * Initializes a builder
+	 *
+	 * @param	directory	Directory of the temporary files, or null for the default one
+	 * @param	memoryBudget	Bytes of nonzeros held in memory before spilling them to disk
+	 * @param	variables	Variables of the problem
+	 * @throws	IOException	If the temporary file cannot be created
+	 * 
+	 * @since	2.1.0
+	 */
+	public ExternalProblemBuilder(Path directory, long memoryBudget, Variable ... variables) throws IOException {
+		this(directory, memoryBudget, VariableTable.of(variables));
+	}
+	
+	/**
+	 * Initializes a builder from the variables in columnar storage
+	 *
+	 * @param	directory	Directory of the temporary files, or null for the default one
+	 * @param	memoryBudget	Bytes of nonzeros held in memory before spilling them to disk
+	 * @param	variables	Variables of the problem
+	 * @throws	IOException	If the temporary file cannot be created
+	 * 
+	 * @since	2.1.0
+	 */
+	public ExternalProblemBuilder(Path directory, long memoryBudget, VariableTable variables) throws IOException {
+		
+		this.variables = variables;
+		this.order = new int[variables.size()];
+		this.position = new int[variables.size()];
+		this.numIntegers = variables.getIntegers().get(0, variables.size()).cardinality();
+		// Integer columns are written first, inside the markers
+		for(int x = 0, i = 0, k = numIntegers; x < variables.size(); x++) {
+			int p = variables.isInteger(x) ? i++ : k++;
+			order[p] = x;
+			position[x] = p;
+		}
+		
+		this.directory = directory;
+		this.memoryBudget = memoryBudget;
+		this.capacity = (int) Math.max(MIN_ENTRIES, Math.min(Integer.MAX_VALUE - 8, memoryBudget / ENTRY_SIZE));
+		this.keys = new long[Math.min(capacity, MIN_ENTRIES)];
+		this.values = new double[keys.length];
+		this.runs = new ArrayList<>();
+		
+		this.rowsFile = createTempFile();
+		this.rows = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(rowsFile), MAX_BUFFER));
+	}
+	
+	/**
+	 * Adds a constraint to the problem
+	 *
+	 * @param	constraint	Constraint to add to the problem
+	 * @return	ExternalProblemBuilder with the added constraint
+	 * @throws	IOException	If the nonzeros cannot be spilled to disk
+	 * 
+	 * @since	2.1.0
+	 */
+	public ExternalProblemBuilder addConstraint(Constraint constraint) throws IOException {
+		
+		int indices[] = constraint.getIndices();
+		double coeffs[] = constraint.getValues();
+		for(int k = 0; k < indices.length && indices[k] < order.length; k++) {
+			if(size == keys.length) {
+				if(size == capacity) {
+					spill();
+				} else {
+					int length = (int) Math.min(capacity, 2L * size);
+					keys = Arrays.copyOf(keys, length);
+					values = Arrays.copyOf(values, length);
+				}
+			}
+			keys[size] = ((long) position[indices[k]] << 32) | numRows;
+			values[size++] = coeffs[k];
+		}
+		
+		rows.writeByte(constraint.getType().ordinal());
+		rows.writeDouble(constraint.getFree());
+		rows.writeDouble(constraint.getRange());
+		if(constraint.getRange() != 0) {
+			numRanges++;
+		}
+		numRows++;
+		
+		return this;
+	}
+	
+	/**
+	 * Writes the MPS file of the problem to a file in ASCII,
+	 * creating or truncating it
+	 *
+	 * @param	path	Path of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public void writeMPS(Path path) throws IOException {
+		
+		try (OutputStream out = Files.newOutputStream(path)) {
+			writeMPS(out);
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of the problem to a byte stream in
+	 * ASCII. The stream is flushed but not closed
+	 *
+	 * @param	out	Destination of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public void writeMPS(OutputStream out) throws IOException {
+		
+		rows.flush();
+		sort(keys, values, 0, size - 1);
+		reduceRuns();
+		int bufferSize = (int) Math.max(MIN_BUFFER, Math.min(MAX_BUFFER, memoryBudget / (runs.size() + 2)));
+		
+		MPSWriter MPS = new MPSWriter(out);
+		MPS.header();
+		try (DataInputStream in = openRows(bufferSize)) {
+			for(int c = 0; c < numRows; c++) {
+				ConstraintType type = ConstraintType.values()[in.readByte()];
+				in.readDouble();
+				in.readDouble();
+				MPS.row(type, c);
+			}
+		}
+		
+		MPS.section(MPSWriter.COLUMNS);
+		double objCoeffs[] = variables.getObjCoeffs();
+		try (Merge merge = new Merge(runs, true, bufferSize)) {
+			boolean marker = false;
+			for(int p = 0; p < order.length; p++) {
+				int x = order[p];
+				if(p == numIntegers && marker) {
+					MPS.marker(false);
+				}
+				if(p < numIntegers && !marker && (objCoeffs[x] != 0 || merge.column() == p)) {
+					MPS.marker(true);
+					marker = true;
+				}
+				if(objCoeffs[x] != 0) {
+					MPS.entry(x, -1, objCoeffs[x]);
+				}
+				while(merge.column() == p) {
+					MPS.entry(x, merge.row(), merge.value());
+					merge.next();
+				}
+				MPS.endColumn();
+			}
+			if(numIntegers == order.length && marker) {
+				MPS.marker(false);
+			}
+		}
+		
+		MPS.section(MPSWriter.RHS);
+		try (DataInputStream in = openRows(bufferSize)) {
+			for(int c = 0; c < numRows; c++) {
+				in.readByte();
+				MPS.rhs(c, in.readDouble());
+				in.readDouble();
+			}
+		}
+		
+		if(numRanges > 0) {
+			MPS.section(MPSWriter.RANGES);
+			try (DataInputStream in = openRows(bufferSize)) {
+				for(int c = 0; c < numRows; c++) {
+					in.readByte();
+					in.readDouble();
+					MPS.range(c, in.readDouble());
+				}
+			}
+		}
+		
+		MPS.section(MPSWriter.BOUNDS);
+		for(int x = 0; x < variables.size(); x++) {
+			MPS.bounds(x, variables.isInteger(x), variables.getLowerBounds()[x], variables.getUpperBounds()[x]);
+		}
+		MPS.end();
+	}
+	
+	/**
+	 * Deletes the temporary files
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	@Override
+	public void close() throws IOException {
+		
+		rows.close();
+		Files.deleteIfExists(rowsFile);
+		for(Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+		runs.clear();
+	}
+	
+	private void spill() throws IOException {
+		
+		sort(keys, values, 0, size - 1);
+		Path run = createTempFile();
+		runs.add(run);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), MAX_BUFFER))) {
+			for(int k = 0; k < size; k++) {
+				out.writeLong(keys[k]);
+				out.writeDouble(values[k]);
+			}
+		}
+		size = 0;
+	}
+	
+	/*
+	 * Merges the oldest runs into a single one until the rest, with
+	 * the entries in memory, can be merged at once, limiting the open
+	 * files and the buffers that share the memory budget
+	 */
+	private void reduceRuns() throws IOException {
+		
+		int bufferSize = (int) Math.max(MIN_BUFFER, Math.min(MAX_BUFFER, memoryBudget / (MAX_FAN_IN + 1)));
+		while(runs.size() >= MAX_FAN_IN) {
+			List<Path> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+			Path run = createTempFile();
+			runs.add(run);
+			try (Merge merge = new Merge(group, false, bufferSize);
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), MAX_BUFFER))) {
+				for(; merge.column() != -1; merge.next()) {
+					out.writeLong(merge.key());
+					out.writeDouble(merge.value());
+				}
+			}
+			for(Path merged : group) {
+				Files.delete(merged);
+			}
+			runs.subList(0, MAX_FAN_IN).clear();
+		}
+	}
+	
+	private Path createTempFile() throws IOException {
+		
+		return directory == null
+			? Files.createTempFile("fixedmps", ".tmp")
+			: Files.createTempFile(directory, "fixedmps", ".tmp");
+	}
+	
+	private DataInputStream openRows(int bufferSize) throws IOException {
+		return new DataInputStream(new BufferedInputStream(Files.newInputStream(rowsFile), bufferSize));
+	}
+	
+	/*
+	 * Sorts the keys, which are unique, moving the values with them
+	 */
+	private static void sort(long keys[], double values[], int low, int high) {
+		
+		while(high - low > 16) {
+			int middle = (low + high) >>> 1;
+			long pivot = keys[middle];
+			int i = low, j = high;
+			while(i <= j) {
+				while(keys[i] < pivot) i++;
+				while(keys[j] > pivot) j--;
+				if(i <= j) {
+					swap(keys, values, i++, j--);
+				}
+			}
+			if(j - low < high - i) {
+				sort(keys, values, low, j);
+				low = i;
+			} else {
+				sort(keys, values, i, high);
+				high = j;
+			}
+		}
+		for(int i = low + 1; i <= high; i++) {
+			for(int j = i; j > low && keys[j - 1] > keys[j]; j--) {
+				swap(keys, values, j - 1, j);
+			}
+		}
+	}
+	
+	private static void swap(long keys[], double values[], int i, int j) {
+		
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+	
+	/*
+	 * Merges sorted runs, and optionally the sorted entries in memory,
+	 * keeping the sources in a binary heap ordered by their current key
+	 */
+	private class Merge implements Closeable {
+		
+		private DataInputStream inputs[];
+		private long current[];
+		private double currentValues[];
+		private int heap[];
+		private int heapSize;
+		private int memory;
+		
+		private Merge(List<Path> sources, boolean inMemory, int bufferSize) throws IOException {
+			
+			inputs = new DataInputStream[sources.size()];
+			current = new long[sources.size() + 1];
+			currentValues = new double[sources.size() + 1];
+			heap = new int[sources.size() + 1];
+			try {
+				for(int r = 0; r < sources.size(); r++) {
+					inputs[r] = new DataInputStream(new BufferedInputStream(Files.newInputStream(sources.get(r)), bufferSize));
+					push(r);
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+			// The entries in memory are the last source, empty if not merged
+			memory = inMemory ? 0 : size;
+			push(sources.size());
+		}
+		
+		private int column() {
+			return heapSize == 0 ? -1 : (int) (current[heap[0]] >>> 32);
+		}
+		
+		private long key() {
+			return current[heap[0]];
+		}
+		
+		private int row() {
+			return (int) current[heap[0]];
+		}
+		
+		private double value() {
+			return currentValues[heap[0]];
+		}
+		
+		private void next() throws IOException {
+			
+			int source = heap[0];
+			heap[0] = heap[--heapSize];
+			down(0);
+			push(source);
+		}
+		
+		/*
+		 * Reads the next entry of a source and adds it to the heap
+		 */
+		private void push(int source) throws IOException {
+			
+			if(source == inputs.length) {
+				if(memory == size) return;
+				current[source] = keys[memory];
+				currentValues[source] = values[memory++];
+			} else {
+				try {
+					current[source] = inputs[source].readLong();
+				} catch (EOFException e) {
+					return;
+				}
+				currentValues[source] = inputs[source].readDouble();
+			}
+			
+			int i = heapSize++;
+			heap[i] = source;
+			while(i > 0 && current[heap[(i - 1) / 2]] > current[heap[i]]) {
+				int parent = (i - 1) / 2;
+				int swap = heap[i];
+				heap[i] = heap[parent];
+				heap[parent] = swap;
+				i = parent;
+			}
+		}
+		
+		private void down(int i) {
+			
+			while(2 * i + 1 < heapSize) {
+				int child = 2 * i + 1;
+				if(child + 1 < heapSize && current[heap[child + 1]] < current[heap[child]]) child++;
+				if(current[heap[i]] <= current[heap[child]]) return;
+				int swap = heap[i];
+				heap[i] = heap[child];
+				heap[child] = swap;
+				i = child;
+			}
+		}
+		
+		@Override
+		public void close() throws IOException {
+			
+			for(DataInputStream input : inputs) {
+				if(input != null) input.close();
+			}
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+/**
+ * Streaming 128-bit hash of a sequence of primitive values, in
+ * the style of MurmurHash3. It is fast and well distributed, but
+ * not cryptographic: it does not resist deliberate collisions
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+final class Fingerprint {
+	
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+	
+	private long h1;
+	private long h2;
+	private long length;
+	
+	Fingerprint() {
+		
+		this.h1 = 0;
+		this.h2 = 0;
+		this.length = 0;
+	}
+	
+	void update(long value) {
+		
+		h1 ^= Long.rotateLeft(value * C1, 31) * C2;
+		h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+		h2 ^= Long.rotateLeft(value * C2, 33) * C1;
+		h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+		length++;
+	}
+	
+	void update(double value) {
+		update(Double.doubleToLongBits(value));
+	}
+	
+	void update(int values[], int from, int to) {
+		
+		int k = from;
+		for(; k + 1 < to; k += 2) {
+			update(((long) values[k] << 32) | (values[k + 1] & 0xFFFFFFFFL));
+		}
+		if(k < to) {
+			update(values[k]);
+		}
+	}
+	
+	void update(double values[]) {
+		
+		for(int k = 0; k < values.length; k++) {
+			update(values[k]);
+		}
+	}
+	
+	/**
+	 * Returns the hash of the values given so far
+	 *
+	 * @return	hash as 32 hexadecimal digits
+	 * @since	2.1.0
+	 */
+	String digest() {
+		
+		long a = h1 ^ length, b = h2 ^ length;
+		a += b;
+		b += a;
+		a = mix(a);
+		b = mix(b);
+		a += b;
+		b += a;
+		
+		return String.format("%016x%016x", a, b);
+	}
+	
+	private static long mix(long k) {
+		
+		k = (k ^ (k >>> 33)) * 0xff51afd7ed558ccdL;
+		k = (k ^ (k >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		
+		return k ^ (k >>> 33);
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,507 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.SparseMatrix;
+
+/**
+ * Renders the MPS file of a problem that changes a little between
+ * runs. The formatted bytes of every column, free term and bound
+ * are kept, and only the ones affected by a change are formatted
+ * again before the file is spliced together, so the cost of a new
+ * file depends on the size of the change rather than on the size
+ * of the problem. The objective coefficients, bounds and free terms
+ * can be changed one by one, or by updating to another problem with
+ * the same structure. It is not thread-safe
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class IncrementalMPSRenderer {
+	
+	private interface Renderer {
+		void render(MPSWriter MPS, int item) throws IOException;
+	}
+	
+	private Sink sink;
+	private MPSWriter MPS;
+	
+	private SparseMatrix matrix;
+	private SparseMatrix columnMatrix;
+	private ConstraintType rowTypes[];
+	private BitSet integers;
+	private double objCoeffs[];
+	private double lowerBounds[];
+	private double upperBounds[];
+	private double freeTerms[];
+	private double ranges[];
+	private int order[];
+	private int position[];
+	private int numIntegers;
+	
+	private byte head[];
+	private byte markerStart[];
+	private byte markerEnd[];
+	private byte rhsHead[];
+	private byte rangesPart[];
+	private byte boundsHead[];
+	private byte end[];
+	private Section columns;
+	private Section rhs;
+	private Section bounds;
+	
+	private BitSet dirtyColumns; // In file order
+	private BitSet dirtyRhs;
+	private BitSet dirtyBounds;
+	
+	/**
+	 * Initializes a renderer with all the lines of the MPS
+	 * file of a problem formatted
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @since	2.1.0
+	 */
+	public IncrementalMPSRenderer(Problem problem) {
+		
+		this.sink = new Sink();
+		this.MPS = new MPSWriter(sink);
+		reset(problem);
+	}
+	
+	/**
+	 * Changes the coefficient of a variable in the objective function
+	 *
+	 * @param	x	Zero-based index of the variable
+	 * @param	objCoeff	New coefficient
+	 * @return	IncrementalMPSRenderer with the changed coefficient
+	 * @since	2.1.0
+	 */
+	public IncrementalMPSRenderer setObjCoeff(int x, double objCoeff) {
+		
+		objCoeffs[x] = objCoeff;
+		dirtyColumns.set(position[x]);
+		
+		return this;
+	}
+	
+	/**
+	 * Changes the lower bound of a variable
+	 *
+	 * @param	x	Zero-based index of the variable
+	 * @param	lower	New lower bound
+	 * @return	IncrementalMPSRenderer with the changed bound
+	 * @since	2.1.0
+	 */
+	public IncrementalMPSRenderer setLowerBound(int x, double lower) {
+		
+		lowerBounds[x] = lower;
+		dirtyBounds.set(x);
+		
+		return this;
+	}
+	
+	/**
+	 * Changes the upper bound of a variable
+	 *
+	 * @param	x	Zero-based index of the variable
+	 * @param	upper	New upper bound
+	 * @return	IncrementalMPSRenderer with the changed bound
+	 * @since	2.1.0
+	 */
+	public IncrementalMPSRenderer setUpperBound(int x, double upper) {
+		
+		upperBounds[x] = upper;
+		dirtyBounds.set(x);
+		
+		return this;
+	}
+	
+	/**
+	 * Changes the free term of a constraint
+	 *
+	 * @param	c	Zero-based index of the constraint
+	 * @param	free	New free term
+	 * @return	IncrementalMPSRenderer with the changed free term
+	 * @since	2.1.0
+	 */
+	public IncrementalMPSRenderer setFreeTerm(int c, double free) {
+		
+		freeTerms[c] = free;
+		dirtyRhs.set(c);
+		
+		return this;
+	}
+	
+	/**
+	 * Moves the renderer to another problem. If it shares the
+	 * constraint matrix object of the current one, as the variants of a
+	 * {@link dev.irzinfante.fixedmps.core.Problem.ProblemModifier} do,
+	 * and has the same types and ranges of constraints and integer
+	 * variables, only the objective coefficients, bounds and free terms
+	 * that differ are formatted again; otherwise the whole file is. A
+	 * different matrix object is taken as a change of structure without
+	 * comparing its nonzeros, so the cost of the update never depends on
+	 * the number of nonzeros unless the file is formatted again
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @return	IncrementalMPSRenderer of the problem
+	 * @since	2.1.0
+	 */
+	public IncrementalMPSRenderer update(Problem problem) {
+		
+		if(!sameStructure(problem)) {
+			reset(problem);
+			return this;
+		}
+		
+		double newObjCoeffs[] = problem.getVariables().getObjCoeffs();
+		double newLowerBounds[] = problem.getVariables().getLowerBounds();
+		double newUpperBounds[] = problem.getVariables().getUpperBounds();
+		for(int x = 0; x < objCoeffs.length; x++) {
+			if(Double.compare(objCoeffs[x], newObjCoeffs[x]) != 0) {
+				setObjCoeff(x, newObjCoeffs[x]);
+			}
+			if(Double.compare(lowerBounds[x], newLowerBounds[x]) != 0) {
+				setLowerBound(x, newLowerBounds[x]);
+			}
+			if(Double.compare(upperBounds[x], newUpperBounds[x]) != 0) {
+				setUpperBound(x, newUpperBounds[x]);
+			}
+		}
+		double newFreeTerms[] = problem.getFreeTerms();
+		for(int c = 0; c < freeTerms.length; c++) {
+			if(Double.compare(freeTerms[c], newFreeTerms[c]) != 0) {
+				setFreeTerm(c, newFreeTerms[c]);
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Creates the MPS file of the current problem
+	 *
+	 * @return	MPS file in a String
+	 * @since	2.1.0
+	 */
+	public String obtainMPSfile() {
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			writeMPS(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return out.toString(StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * Writes the MPS file of the current problem to a byte
+	 * stream in ASCII. The stream is flushed but not closed
+	 *
+	 * @param	out	Destination of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public void writeMPS(OutputStream out) throws IOException {
+		
+		refresh();
+		
+		// The markers are only written if some integer column has lines
+		int integerBytes = columns.offsets[numIntegers];
+		out.write(head);
+		if(integerBytes > 0) {
+			out.write(markerStart);
+			out.write(columns.data, 0, integerBytes);
+			out.write(markerEnd);
+		}
+		out.write(columns.data, integerBytes, columns.data.length - integerBytes);
+		out.write(rhsHead);
+		out.write(rhs.data);
+		out.write(rangesPart);
+		out.write(boundsHead);
+		out.write(bounds.data);
+		out.write(end);
+		out.flush();
+	}
+	
+	/**
+	 * Writes the MPS file of the current problem to a file
+	 * in ASCII, creating or truncating it
+	 *
+	 * @param	path	Path of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public void writeMPS(Path path) throws IOException {
+		
+		try (OutputStream out = Files.newOutputStream(path)) {
+			writeMPS(out);
+		}
+	}
+	
+	private boolean sameStructure(Problem problem) {
+		
+		return problem.getMatrix() == matrix
+			&& problem.getVariables().size() == objCoeffs.length
+			&& Arrays.equals(problem.getRowTypes(), rowTypes)
+			&& Arrays.equals(problem.getRanges(), ranges)
+			&& problem.getVariables().getIntegers().get(0, objCoeffs.length).equals(integers);
+	}
+	
+	private void reset(Problem problem) {
+		
+		matrix = problem.getMatrix();
+		columnMatrix = problem.getColumnMatrix();
+		rowTypes = problem.getRowTypes().clone();
+		objCoeffs = problem.getVariables().getObjCoeffs().clone();
+		lowerBounds = problem.getVariables().getLowerBounds().clone();
+		upperBounds = problem.getVariables().getUpperBounds().clone();
+		freeTerms = problem.getFreeTerms().clone();
+		ranges = problem.getRanges().clone();
+		integers = problem.getVariables().getIntegers().get(0, objCoeffs.length);
+		
+		int numColumns = objCoeffs.length;
+		numIntegers = integers.cardinality();
+		// Integer columns are written first, inside the markers
+		order = new int[numColumns];
+		position = new int[numColumns];
+		for(int x = 0, i = 0, k = numIntegers; x < numColumns; x++) {
+			order[integers.get(x) ? i++ : k++] = x;
+		}
+		for(int k = 0; k < numColumns; k++) {
+			position[order[k]] = k;
+		}
+		
+		try {
+			head = render((MPS, item) -> {
+				MPS.header();
+				for(int c = 0; c < rowTypes.length; c++) {
+					MPS.row(rowTypes[c], c);
+				}
+				MPS.section(MPSWriter.COLUMNS);
+			});
+			markerStart = render((MPS, item) -> MPS.marker(true));
+			markerEnd = render((MPS, item) -> MPS.marker(false));
+			rhsHead = render((MPS, item) -> MPS.section(MPSWriter.RHS));
+			// The ranges are part of the structure, so they are rendered once
+			rangesPart = render((MPS, item) -> {
+				if(problem.hasRanges()) {
+					MPS.section(MPSWriter.RANGES);
+					for(int c = 0; c < ranges.length; c++) {
+						MPS.range(c, ranges[c]);
+					}
+				}
+			});
+			boundsHead = render((MPS, item) -> MPS.section(MPSWriter.BOUNDS));
+			end = render((MPS, item) -> MPS.end());
+			
+			columns = new Section(numColumns);
+			rhs = new Section(freeTerms.length);
+			bounds = new Section(numColumns);
+			dirtyColumns = new BitSet(numColumns);
+			dirtyRhs = new BitSet(freeTerms.length);
+			dirtyBounds = new BitSet(numColumns);
+			dirtyColumns.set(0, numColumns);
+			dirtyRhs.set(0, freeTerms.length);
+			dirtyBounds.set(0, numColumns);
+			refresh();
+			sink.trim();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void refresh() throws IOException {
+		
+		columns.patch(dirtyColumns, this::column);
+		rhs.patch(dirtyRhs, (MPS, c) -> MPS.rhs(c, freeTerms[c]));
+		bounds.patch(dirtyBounds, (MPS, x) -> MPS.bounds(x, integers.get(x), lowerBounds[x], upperBounds[x]));
+	}
+	
+	private void column(MPSWriter MPS, int k) throws IOException {
+		
+		int x = order[k];
+		MPS.column(x, objCoeffs[x], columnMatrix.getIndices(), columnMatrix.getValues(),
+			columnMatrix.getStarts()[x], columnMatrix.getStarts()[x+1]);
+	}
+	
+	private byte[] render(Renderer renderer) throws IOException {
+		
+		sink.reset();
+		renderer.render(MPS, 0);
+		MPS.flush();
+		
+		return sink.toByteArray();
+	}
+	
+	/*
+	 * Formatted bytes of the items of a section, with those of item i
+	 * in positions offsets[i] to offsets[i+1]-1 of the data array
+	 */
+	private class Section {
+		
+		private byte data[];
+		private int offsets[];
+		
+		private Section(int count) {
+			
+			this.data = new byte[0];
+			this.offsets = new int[count + 1];
+		}
+		
+		/*
+		 * Formats again the dirty items and clears them. The new bytes are copied
+		 * in place when no item changes its size, and the section is spliced again
+		 * otherwise
+		 */
+		private void patch(BitSet dirty, Renderer renderer) throws IOException {
+			
+			int count = dirty.cardinality();
+			if(count == 0) {
+				return;
+			}
+			
+			sink.reset();
+			int items[] = new int[count];
+			int patches[] = new int[count + 1];
+			long growth = 0;
+			for(int item = dirty.nextSetBit(0), j = 0; item >= 0; item = dirty.nextSetBit(item + 1), j++) {
+				renderer.render(MPS, item);
+				MPS.flush();
+				items[j] = item;
+				patches[j + 1] = sink.size();
+				growth += (patches[j + 1] - patches[j]) - (offsets[item + 1] - offsets[item]);
+			}
+			dirty.clear();
+			
+			if(sameSizes(items, patches)) {
+				for(int j = 0; j < count; j++) {
+					System.arraycopy(sink.buffer, patches[j], data, offsets[items[j]], patches[j + 1] - patches[j]);
+				}
+				return;
+			}
+			
+			if(data.length + growth > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("The section is too big to be kept in memory");
+			}
+			byte newData[] = new byte[(int) (data.length + growth)];
+			int newOffsets[] = new int[offsets.length];
+			int from = 0, to = 0;
+			for(int j = 0; j < count; j++) {
+				int item = items[j];
+				int length = offsets[item] - offsets[from];
+				System.arraycopy(data, offsets[from], newData, to, length);
+				for(int i = from; i < item; i++) {
+					newOffsets[i + 1] = offsets[i + 1] - offsets[from] + to;
+				}
+				to += length;
+				System.arraycopy(sink.buffer, patches[j], newData, to, patches[j + 1] - patches[j]);
+				to += patches[j + 1] - patches[j];
+				newOffsets[item + 1] = to;
+				from = item + 1;
+			}
+			System.arraycopy(data, offsets[from], newData, to, data.length - offsets[from]);
+			for(int i = from; i < offsets.length - 1; i++) {
+				newOffsets[i + 1] = offsets[i + 1] - offsets[from] + to;
+			}
+			
+			data = newData;
+			offsets = newOffsets;
+		}
+		
+		private boolean sameSizes(int items[], int patches[]) {
+			
+			for(int j = 0; j < items.length; j++) {
+				if(patches[j + 1] - patches[j] != offsets[items[j] + 1] - offsets[items[j]]) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+	}
+	
+	/*
+	 * Growable byte array that exposes its content
+	 */
+	private static class Sink extends OutputStream {
+		
+		private byte buffer[] = new byte[1 << 12];
+		private int size;
+		
+		@Override
+		public void write(int b) {
+			
+			ensureCapacity(size + 1);
+			buffer[size++] = (byte) b;
+		}
+		
+		@Override
+		public void write(byte b[], int off, int len) {
+			
+			ensureCapacity(size + len);
+			System.arraycopy(b, off, buffer, size, len);
+			size += len;
+		}
+		
+		private void ensureCapacity(int capacity) {
+			
+			if(capacity > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, capacity));
+			}
+		}
+		
+		private int size() {
+			return size;
+		}
+		
+		private void reset() {
+			size = 0;
+		}
+		
+		private void trim() {
+			
+			if(buffer.length > 1 << 16) {
+				buffer = new byte[1 << 16];
+			}
+		}
+		
+		private byte[] toByteArray() {
+			return Arrays.copyOf(buffer, size);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,387 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.SparseMatrix;
+import dev.irzinfante.fixedmps.core.VariableTable;
+
+/**
+ * Bounded cache of rendered MPS files, addressed by the
+ * fingerprint of their problems, so that a problem that has
+ * already been rendered is not rendered again. Files are kept in
+ * memory up to a number of bytes and, optionally, in a directory up
+ * to another number of bytes, evicting the least recently used ones
+ * first. Files read from the directory are moved back to memory.
+ * Files in the directory are named by their fingerprint and are
+ * found again when the cache is created on the same directory, while
+ * other files in it are left alone. It is
+ * thread-safe, although the same problem can be rendered by two
+ * threads that miss it at the same time
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class MPSCache {
+	
+	private static final String EXTENSION = ".mps";
+	private static final String TEMPORARY = ".tmp";
+	private static final int KEY_LENGTH = 32;
+	
+	private long memoryBudget;
+	private long memorySize;
+	private LinkedHashMap<String, String> memory;
+	
+	private Path directory;
+	private long diskBudget;
+	private long diskSize;
+	private LinkedHashMap<String, Long> disk;
+	
+	private AtomicLong hits;
+	private AtomicLong misses;
+	private AtomicLong evictions;
+	
+	/**
+	 * Initializes a cache that only keeps files in memory
+	 *
+	 * @param	memoryBudget	Bytes of files kept in memory
+	 * @since	2.1.0
+	 */
+	public MPSCache(long memoryBudget) {
+		
+		this.memoryBudget = memoryBudget;
+		this.memorySize = 0;
+		this.memory = new LinkedHashMap<>(16, 0.75f, true);
+		
+		this.disk = new LinkedHashMap<>(16, 0.75f, true);
+		
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.evictions = new AtomicLong();
+	}
+	
+	/**
+	 * Initializes a cache that keeps files in memory and in a
+	 * directory. The MPS files already in the directory that are
+	 * named by a fingerprint are taken as cached, from the oldest to
+	 * the newest, and the temporary files left by interrupted writes
+	 * of the cache are deleted. Other files are not touched
+	 *
+	 * @param	memoryBudget	Bytes of files kept in memory
+	 * @param	directory	Directory of the cached files, which is created if missing
+	 * @param	diskBudget	Bytes of files kept in the directory
+	 * @throws	IOException	If the directory cannot be created or listed
+	 * @since	2.1.0
+	 */
+	public MPSCache(long memoryBudget, Path directory, long diskBudget) throws IOException {
+		
+		this(memoryBudget);
+		this.directory = Files.createDirectories(directory);
+		this.diskBudget = diskBudget;
+		this.diskSize = 0;
+		
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for(Path file : stream) {
+				String name = file.getFileName().toString();
+				if(!Files.isRegularFile(file) || !isKey(name.substring(0, Math.min(KEY_LENGTH, name.length())))) {
+					continue;
+				}
+				if(name.length() == KEY_LENGTH + EXTENSION.length() && name.endsWith(EXTENSION)) {
+					files.add(file);
+				} else if(name.endsWith(TEMPORARY)) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+		files.sort((a, b) -> {
+			try {
+				return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		for(Path file : files) {
+			String name = file.getFileName().toString();
+			long size = Files.size(file);
+			disk.put(name.substring(0, name.length() - EXTENSION.length()), size);
+			diskSize += size;
+		}
+		synchronized(this) {
+			evictDisk();
+		}
+	}
+	
+	/*
+	 * Whether a name is a fingerprint, as returned by fingerprint(Problem)
+	 */
+	private static boolean isKey(String name) {
+		
+		if(name.length() != KEY_LENGTH) {
+			return false;
+		}
+		for(int i = 0; i < KEY_LENGTH; i++) {
+			char c = name.charAt(i);
+			if(!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Computes a 128-bit fingerprint of a problem, over its variables,
+	 * constraints and their nonzeros, reading each of them once. Problems
+	 * with the same fingerprint have the same MPS file, unless the
+	 * fingerprints are forged on purpose, as the hash is not cryptographic
+	 *
+	 * @param	problem	The LP problem to fingerprint
+	 * @return	fingerprint as 32 hexadecimal digits
+	 * @since	2.1.0
+	 */
+	public static String fingerprint(Problem problem) {
+		
+		VariableTable variables = problem.getVariables();
+		SparseMatrix matrix = problem.getMatrix();
+		ConstraintType rowTypes[] = problem.getRowTypes();
+		
+		Fingerprint fingerprint = new Fingerprint();
+		fingerprint.update(variables.size());
+		fingerprint.update(rowTypes.length);
+		fingerprint.update(matrix.getNonzeros());
+		
+		fingerprint.update(variables.getObjCoeffs());
+		fingerprint.update(variables.getLowerBounds());
+		fingerprint.update(variables.getUpperBounds());
+		for(long word : variables.getIntegers().get(0, variables.size()).toLongArray()) {
+			fingerprint.update(word);
+		}
+		
+		fingerprint.update(matrix.getStarts(), 0, rowTypes.length + 1);
+		fingerprint.update(matrix.getIndices(), 0, matrix.getNonzeros());
+		fingerprint.update(matrix.getValues());
+		for(int c = 0; c < rowTypes.length; c++) {
+			fingerprint.update(rowTypes[c].ordinal());
+		}
+		fingerprint.update(problem.getFreeTerms());
+		// Problems without ranges keep the fingerprints they had before ranges existed
+		if(problem.hasRanges()) {
+			fingerprint.update(problem.getRanges());
+		}
+		
+		return fingerprint.digest();
+	}
+	
+	/**
+	 * Returns the MPS file of a Problem, rendering and caching it
+	 * only if it is not in the cache
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @return	MPS file in a String
+	 * @since	2.1.0
+	 */
+	public String obtainMPSfile(Problem problem) {
+		
+		String key = fingerprint(problem);
+		
+		String file = lookup(key);
+		if(file != null) {
+			hits.incrementAndGet();
+			return file;
+		}
+		
+		misses.incrementAndGet();
+		file = MPSUtil.obtainMPSfile(problem);
+		synchronized(this) {
+			putMemory(key, file);
+		}
+		if(directory != null) {
+			try {
+				store(key, file.getBytes(StandardCharsets.US_ASCII));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		return file;
+	}
+	
+	/**
+	 * Returns the path of the MPS file of a Problem in the directory
+	 * of the cache, rendering it only if it is not in the cache. The
+	 * file may be evicted later by other calls
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @return	path of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @throws	IllegalStateException	If the cache has no directory
+	 * @since	2.1.0
+	 */
+	public Path obtainMPSpath(Problem problem) throws IOException {
+		
+		if(directory == null) {
+			throw new IllegalStateException("The cache has no directory");
+		}
+		
+		String key = fingerprint(problem);
+		Path path = directory.resolve(key + EXTENSION);
+		synchronized(this) {
+			if(disk.get(key) != null && Files.exists(path)) {
+				hits.incrementAndGet();
+				return path;
+			}
+		}
+		
+		String file;
+		synchronized(this) {
+			file = memory.get(key);
+		}
+		if(file != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		
+		if(file != null) {
+			store(key, file.getBytes(StandardCharsets.US_ASCII));
+		} else {
+			Path temporary = Files.createTempFile(directory, key, TEMPORARY);
+			try {
+				try (OutputStream out = Files.newOutputStream(temporary)) {
+					MPSUtil.writeMPS(problem, out);
+				}
+				install(key, temporary);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		}
+		
+		return path;
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	private String lookup(String key) {
+		
+		synchronized(this) {
+			String file = memory.get(key);
+			if(file != null || disk.get(key) == null) {
+				return file;
+			}
+		}
+		
+		String file;
+		try {
+			file = Files.readString(directory.resolve(key + EXTENSION), StandardCharsets.US_ASCII);
+		} catch (IOException e) {
+			// Evicted or removed in the meantime
+			return null;
+		}
+		synchronized(this) {
+			putMemory(key, file);
+		}
+		
+		return file;
+	}
+	
+	private void putMemory(String key, String file) {
+		
+		if(file.length() > memoryBudget) {
+			return;
+		}
+		
+		String old = memory.put(key, file);
+		memorySize += file.length() - (old != null ? old.length() : 0);
+		for(Iterator<Map.Entry<String, String>> it = memory.entrySet().iterator(); memorySize > memoryBudget && it.hasNext(); ) {
+			Map.Entry<String, String> entry = it.next();
+			memorySize -= entry.getValue().length();
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+	
+	private void store(String key, byte file[]) throws IOException {
+		
+		Path temporary = Files.createTempFile(directory, key, TEMPORARY);
+		try {
+			Files.write(temporary, file);
+			install(key, temporary);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+	
+	/*
+	 * Moves a rendered file into place, so that readers never see it partially written
+	 */
+	private void install(String key, Path temporary) throws IOException {
+		
+		long size = Files.size(temporary);
+		synchronized(this) {
+			Files.move(temporary, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Long old = disk.put(key, size);
+			diskSize += size - (old != null ? old : 0);
+			evictDisk();
+		}
+	}
+	
+	/*
+	 * Evicts the least recently used files, always keeping the last one,
+	 * which may have just been returned
+	 */
+	private void evictDisk() throws IOException {
+		
+		for(Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator(); diskSize > diskBudget && disk.size() > 1; ) {
+			Map.Entry<String, Long> entry = it.next();
+			Files.deleteIfExists(directory.resolve(entry.getKey() + EXTENSION));
+			diskSize -= entry.getValue();
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+	
+}
\ No newline at end of file
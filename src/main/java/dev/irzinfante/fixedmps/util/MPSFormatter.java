@@ -0,0 +1,330 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes the fixed-width fields of a MPS file as ASCII
+ * bytes into a buffer, without allocating objects. Numbers are
+ * written exactly as {@code String.format(Locale.ROOT, "%+.5e", value)}
+ * would. Names are a prefix letter followed by seven characters
+ * that encode a number, and can be turned back into it
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+final class MPSFormatter {
+	
+	static final int NUMBER_WIDTH = 12;
+	static final int NAME_WIDTH = 8;
+	
+	/*
+	 * Names up to this number are written in decimal, and the
+	 * rest as an uppercase letter and six base-36 digits
+	 */
+	private static final int DECIMAL_NAMES = 10000000;
+	private static final byte DIGITS[] = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes(StandardCharsets.US_ASCII);
+	
+	private static final double MAX = Math.pow(10, 10);
+	private static final double MIN = Math.pow(10, -10);
+	
+	private static final double POWERS[] = new double[23];
+	static {
+		POWERS[0] = 1;
+		for(int i = 1; i < POWERS.length; i++) {
+			POWERS[i] = 10 * POWERS[i-1];
+		}
+	}
+	
+	/*
+	 * Distance to a rounding tie below which the scaled value is not
+	 * trusted and the number is formatted by String.format. The scaled
+	 * value is below 10^6 and carries a single rounding error, so its
+	 * error is far below this margin
+	 */
+	private static final double TIE_MARGIN = 1e-7;
+	
+	private MPSFormatter() {
+	}
+	
+	/**
+	 * Clamps the magnitude of a nonzero number into [1e-10, 1e10]
+	 *
+	 * @param	num	Number to clamp
+	 * @return	clamped number
+	 * @since	2.1.0
+	 */
+	static double bound(double num) {
+		if(num == 0) {
+			return 0;
+		} else if(num > 0) {
+			return num > MAX ? MAX : num < MIN ? MIN : num;
+		} else if(num < 0) {
+			return num < -MAX ? -MAX : num > -MIN ? -MIN : num;
+		} else {
+			return num;
+		}
+	}
+	
+	/**
+	 * Writes a number in {@code %+.5e} format
+	 *
+	 * @param	buffer	Destination buffer
+	 * @param	position	Position of the first byte to write
+	 * @param	value	Number to write
+	 * @return	position after the last byte written
+	 * @since	2.1.0
+	 */
+	static int number(byte buffer[], int position, double value) {
+		
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			return fallback(buffer, position, value);
+		}
+		
+		boolean negative = (Double.doubleToRawLongBits(value) & Long.MIN_VALUE) != 0;
+		double magnitude = Math.abs(value);
+		long mantissa;
+		int exponent;
+		
+		if(magnitude == 0) {
+			mantissa = 0;
+			exponent = 0;
+		} else {
+			exponent = (int) Math.floor(Math.getExponent(magnitude) * 0.30102999566398120);
+			double scaled = scale(magnitude, exponent);
+			while(scaled >= 999999.5) {
+				scaled = scale(magnitude, ++exponent);
+			}
+			while(scaled < 99999.5) {
+				scaled = scale(magnitude, --exponent);
+			}
+			if(Double.isNaN(scaled)) {
+				return fallback(buffer, position, value);
+			}
+			
+			double floor = Math.floor(scaled);
+			if(Math.abs(scaled - floor - 0.5) < TIE_MARGIN) {
+				return fallback(buffer, position, value);
+			}
+			
+			mantissa = (long) Math.floor(scaled + 0.5);
+			if(mantissa == 1000000) {
+				mantissa = 100000;
+				exponent++;
+			}
+		}
+		
+		buffer[position++] = (byte) (negative ? '-' : '+');
+		buffer[position + 6] = (byte) ('0' + mantissa % 10); mantissa /= 10;
+		buffer[position + 5] = (byte) ('0' + mantissa % 10); mantissa /= 10;
+		buffer[position + 4] = (byte) ('0' + mantissa % 10); mantissa /= 10;
+		buffer[position + 3] = (byte) ('0' + mantissa % 10); mantissa /= 10;
+		buffer[position + 2] = (byte) ('0' + mantissa % 10); mantissa /= 10;
+		buffer[position + 1] = '.';
+		buffer[position] = (byte) ('0' + mantissa);
+		position += 7;
+		buffer[position++] = 'e';
+		buffer[position++] = (byte) (exponent < 0 ? '-' : '+');
+		exponent = Math.abs(exponent);
+		buffer[position++] = (byte) ('0' + exponent / 10);
+		buffer[position++] = (byte) ('0' + exponent % 10);
+		
+		return position;
+	}
+	
+	/**
+	 * Returns the number of bytes written by
+	 * {@link #number(byte[], int, double)} for a clamped value
+	 *
+	 * @param	value	Number clamped by {@link #bound(double)}
+	 * @return	width of the number
+	 * @since	2.1.0
+	 */
+	static int width(double value) {
+		
+		return Double.isNaN(value) ? 3 : NUMBER_WIDTH;
+	}
+	
+	/*
+	 * Returns magnitude * 10^(5 - exponent) with a single rounding,
+	 * or NaN when the power of ten is not exactly representable
+	 */
+	private static double scale(double magnitude, int exponent) {
+		
+		int power = 5 - exponent;
+		if(power >= 0 && power < POWERS.length) {
+			return magnitude * POWERS[power];
+		} else if(power < 0 && -power < POWERS.length) {
+			return magnitude / POWERS[-power];
+		} else {
+			return Double.NaN;
+		}
+	}
+	
+	private static int fallback(byte buffer[], int position, double value) {
+		
+		return text(buffer, position, String.format(Locale.ROOT, "%+.5e", value));
+	}
+	
+	/**
+	 * Writes a name made of a prefix letter and seven characters.
+	 * Numbers below 10,000,000 are padded with zeros to seven digits,
+	 * as {@code String.format("C%07d", number)}. Greater numbers are
+	 * written, after subtracting 10,000,000, as a letter for the
+	 * multiples of 36^6 followed by six base-36 digits, so they
+	 * never clash with the decimal names
+	 *
+	 * @param	buffer	Destination buffer
+	 * @param	position	Position of the first byte to write
+	 * @param	prefix	First letter of the name
+	 * @param	number	Non-negative number of the name
+	 * @return	position after the last byte written
+	 * @since	2.1.0
+	 */
+	static int name(byte buffer[], int position, char prefix, int number) {
+		
+		buffer[position] = (byte) prefix;
+		if(number < DECIMAL_NAMES) {
+			for(int d = NAME_WIDTH - 1; d > 0; d--) {
+				buffer[position + d] = (byte) ('0' + number % 10);
+				number /= 10;
+			}
+		} else {
+			int rest = number - DECIMAL_NAMES;
+			for(int d = NAME_WIDTH - 1; d > 1; d--) {
+				buffer[position + d] = DIGITS[rest % 36];
+				rest /= 36;
+			}
+			buffer[position + 1] = (byte) ('A' + rest);
+		}
+		
+		return position + NAME_WIDTH;
+	}
+	
+	/**
+	 * Returns the number of a name written by
+	 * {@link #name(byte[], int, char, int)}
+	 *
+	 * @param	buffer	Buffer holding the name
+	 * @param	from	Position of the first character of the name
+	 * @param	to	Position after the last character of the name
+	 * @param	prefix	First letter of the name
+	 * @return	number of the name, or -1 if it is not a name with that prefix
+	 * @since	2.1.0
+	 */
+	static int nameNumber(byte buffer[], int from, int to, char prefix) {
+		
+		if(to - from != NAME_WIDTH || buffer[from] != prefix) {
+			return -1;
+		}
+		
+		byte first = buffer[from + 1];
+		if(first >= '0' && first <= '9') {
+			int number = 0;
+			for(int i = from + 1; i < to; i++) {
+				int digit = buffer[i] - '0';
+				if(digit < 0 || digit > 9) {
+					return -1;
+				}
+				number = 10 * number + digit;
+			}
+			return number;
+		} else if(first >= 'A' && first <= 'Z') {
+			long number = first - 'A';
+			for(int i = from + 2; i < to; i++) {
+				int digit = digit(buffer[i]);
+				if(digit < 0) {
+					return -1;
+				}
+				number = 36 * number + digit;
+			}
+			number += DECIMAL_NAMES;
+			return number <= Integer.MAX_VALUE ? (int) number : -1;
+		}
+		
+		return -1;
+	}
+	
+	private static int digit(byte character) {
+		
+		if(character >= '0' && character <= '9') {
+			return character - '0';
+		} else if(character >= 'A' && character <= 'Z') {
+			return character - 'A' + 10;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Writes a text padded with spaces or truncated to a width
+	 *
+	 * @param	buffer	Destination buffer
+	 * @param	position	Position of the first byte to write
+	 * @param	text	ASCII text to write
+	 * @param	width	Width of the field
+	 * @return	position after the last byte written
+	 * @since	2.1.0
+	 */
+	static int text(byte buffer[], int position, String text, int width) {
+		
+		int length = Math.min(text.length(), width);
+		for(int i = 0; i < length; i++) {
+			buffer[position++] = (byte) text.charAt(i);
+		}
+		
+		return spaces(buffer, position, width - length);
+	}
+	
+	/**
+	 * Writes a text as it is
+	 *
+	 * @param	buffer	Destination buffer
+	 * @param	position	Position of the first byte to write
+	 * @param	text	ASCII text to write
+	 * @return	position after the last byte written
+	 * @since	2.1.0
+	 */
+	static int text(byte buffer[], int position, String text) {
+		
+		return text(buffer, position, text, text.length());
+	}
+	
+	/**
+	 * Writes a number of spaces
+	 *
+	 * @param	buffer	Destination buffer
+	 * @param	position	Position of the first byte to write
+	 * @param	count	Number of spaces
+	 * @return	position after the last byte written
+	 * @since	2.1.0
+	 */
+	static int spaces(byte buffer[], int position, int count) {
+		
+		for(int i = 0; i < count; i++) {
+			buffer[position++] = ' ';
+		}
+		
+		return position;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,588 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.Problem.ProblemBuilder;
+import dev.irzinfante.fixedmps.core.VariableTable;
+
+/**
+ * Parses a fixed MPS file into a Problem. The file is
+ * memory-mapped and copied in chunks to a byte buffer where
+ * lines are split in fields and numbers are parsed, without
+ * creating Strings. Names, of up to eight characters, are
+ * looked up packed in a long
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+final class MPSReader {
+	
+	private static final long WINDOW_SIZE = 1 << 30;
+	private static final int CHUNK_SIZE = 1 << 20;
+	private static final int MAX_FIELDS = 6;
+	
+	private static final double POWERS[] = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	private static final int OBJECTIVE = -2;
+	private static final int FREE_ROW = -3;
+	
+	private enum Section {
+		NAME, ROWS, COLUMNS, RHS, RANGES, BOUNDS, ENDATA
+	}
+	
+	private byte chunk[];
+	private int fieldStart[];
+	private int fieldEnd[];
+	private int fields;
+	private long line;
+	private Section section;
+	
+	private NameIndex rowIndex;
+	private boolean generatedRows;
+	private ConstraintType rowTypes[];
+	private double freeTerms[];
+	private double ranges[];
+	private int numRows;
+	private boolean objective;
+	
+	private NameIndex columnIndex;
+	private boolean generatedColumns;
+	private double objCoeffs[];
+	private boolean integers[];
+	private double lowerBounds[];
+	private double upperBounds[];
+	private boolean upperSet[];
+	private int numColumns;
+	private boolean integer;
+	
+	private int entryRows[];
+	private int entryColumns[];
+	private double entryValues[];
+	private int numEntries;
+	
+	private MPSReader() {
+		
+		this.chunk = new byte[CHUNK_SIZE];
+		this.fieldStart = new int[MAX_FIELDS + 1];
+		this.fieldEnd = new int[MAX_FIELDS + 1];
+		this.line = 0;
+		
+		this.rowIndex = new NameIndex();
+		this.generatedRows = true;
+		this.rowTypes = new ConstraintType[16];
+		this.freeTerms = new double[16];
+		
+		this.columnIndex = new NameIndex();
+		this.generatedColumns = true;
+		this.objCoeffs = new double[16];
+		this.integers = new boolean[16];
+		this.lowerBounds = new double[16];
+		this.upperBounds = new double[16];
+		this.upperSet = new boolean[16];
+		
+		this.entryRows = new int[16];
+		this.entryColumns = new int[16];
+		this.entryValues = new double[16];
+	}
+	
+	/**
+	 * Reads a fixed MPS file
+	 *
+	 * @param	path	Path of the MPS file
+	 * @return	LP problem of the file
+	 * @throws	IOException	If an I/O error occurs or the file is not valid
+	 * @since	2.1.0
+	 */
+	static Problem read(Path path) throws IOException {
+		
+		MPSReader reader = new MPSReader();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			reader.scan(channel);
+		}
+		
+		return reader.problem();
+	}
+	
+	private void scan(FileChannel channel) throws IOException {
+		
+		long size = channel.size();
+		int length = 0;
+		for(long window = 0; window < size; window += WINDOW_SIZE) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, window, Math.min(WINDOW_SIZE, size - window));
+			while(buffer.hasRemaining()) {
+				int count = Math.min(chunk.length - length, buffer.remaining());
+				buffer.get(chunk, length, count);
+				length += count;
+				
+				int start = 0;
+				for(int i = 0; i < length; i++) {
+					if(chunk[i] == '\n') {
+						line(start, i);
+						start = i + 1;
+					}
+				}
+				if(start == 0 && length == chunk.length) {
+					throw error("Line too long");
+				}
+				System.arraycopy(chunk, start, chunk, 0, length - start);
+				length -= start;
+			}
+		}
+		if(length > 0) {
+			line(0, length);
+		}
+		
+		if(section != Section.ENDATA) {
+			throw error("Missing ENDATA");
+		}
+	}
+	
+	private void line(int from, int to) throws IOException {
+		
+		line++;
+		if(to > from && chunk[to - 1] == '\r') {
+			to--;
+		}
+		if(to == from || chunk[from] == '*' || section == Section.ENDATA) {
+			return;
+		}
+		
+		split(from, to);
+		if(fields == 0) {
+			return;
+		}
+		if(chunk[from] != ' ' && chunk[from] != '\t') {
+			header();
+		} else if(section == Section.ROWS) {
+			row();
+		} else if(section == Section.COLUMNS) {
+			column();
+		} else if(section == Section.RHS) {
+			rhs();
+		} else if(section == Section.RANGES) {
+			range();
+		} else if(section == Section.BOUNDS) {
+			bound();
+		} else {
+			throw error("Data out of a section");
+		}
+	}
+	
+	private void split(int from, int to) throws IOException {
+		
+		fields = 0;
+		int i = from;
+		while(i < to) {
+			while(i < to && (chunk[i] == ' ' || chunk[i] == '\t')) i++;
+			if(i == to) break;
+			if(fields == MAX_FIELDS) {
+				throw error("Too many fields");
+			}
+			fieldStart[fields] = i;
+			while(i < to && chunk[i] != ' ' && chunk[i] != '\t') i++;
+			fieldEnd[fields++] = i;
+		}
+	}
+	
+	private void header() throws IOException {
+		
+		if(is(0, "NAME")) {
+			section = Section.NAME;
+		} else if(is(0, "ROWS")) {
+			section = Section.ROWS;
+		} else if(is(0, "COLUMNS")) {
+			section = Section.COLUMNS;
+			freeTerms = Arrays.copyOf(freeTerms, numRows);
+		} else if(is(0, "RHS")) {
+			section = Section.RHS;
+		} else if(is(0, "RANGES")) {
+			section = Section.RANGES;
+			ranges = new double[numRows];
+		} else if(is(0, "BOUNDS")) {
+			section = Section.BOUNDS;
+		} else if(is(0, "ENDATA")) {
+			section = Section.ENDATA;
+		} else {
+			throw error("Unsupported section " + text(0));
+		}
+	}
+	
+	private void row() throws IOException {
+		
+		if(fields != 2 || fieldEnd[0] - fieldStart[0] != 1) {
+			throw error("Invalid row");
+		}
+		
+		long name = name(1);
+		if(rowIndex.get(name) != -1) {
+			throw error("Duplicate row " + text(1));
+		}
+		// Rows can be found by their number while they are named as the writer does
+		int number = MPSFormatter.nameNumber(chunk, fieldStart[1], fieldEnd[1], 'C');
+		generatedRows &= chunk[fieldStart[0]] == 'N' ? number < 1 : number == numRows + 1;
+		
+		switch(chunk[fieldStart[0]]) {
+			case 'N':
+				rowIndex.put(name, objective ? FREE_ROW : OBJECTIVE);
+				objective = true;
+				return;
+			case 'L':
+				addRow(name, ConstraintType.L);
+				return;
+			case 'G':
+				addRow(name, ConstraintType.G);
+				return;
+			case 'E':
+				addRow(name, ConstraintType.E);
+				return;
+			default:
+				throw error("Invalid row type " + text(0));
+		}
+	}
+	
+	private void addRow(long name, ConstraintType type) {
+		
+		if(numRows == rowTypes.length) {
+			rowTypes = Arrays.copyOf(rowTypes, 2 * numRows);
+			freeTerms = Arrays.copyOf(freeTerms, 2 * numRows);
+		}
+		rowTypes[numRows] = type;
+		rowIndex.put(name, numRows++);
+	}
+	
+	private void column() throws IOException {
+		
+		if(fields == 3 && is(1, "'MARKER'")) {
+			if(is(2, "'INTORG'")) {
+				integer = true;
+			} else if(is(2, "'INTEND'")) {
+				integer = false;
+			} else {
+				throw error("Invalid marker " + text(2));
+			}
+			return;
+		}
+		if(fields != 3 && fields != 5) {
+			throw error("Invalid column entry");
+		}
+		
+		int column = column(0);
+		for(int field = 1; field < fields; field += 2) {
+			int row = row(field);
+			double value = number(field + 1);
+			if(row == OBJECTIVE) {
+				objCoeffs[column] += value;
+			} else if(row != FREE_ROW) {
+				addEntry(row, column, value);
+			}
+		}
+	}
+	
+	private int column(int field) throws IOException {
+		
+		int number = MPSFormatter.nameNumber(chunk, fieldStart[field], fieldEnd[field], 'X');
+		if(generatedColumns && number >= 1 && number <= numColumns) {
+			return number - 1;
+		}
+		
+		long name = name(field);
+		int column = columnIndex.get(name);
+		if(column == -1) {
+			generatedColumns &= number == numColumns + 1;
+			column = addColumn(name);
+		}
+		
+		return column;
+	}
+	
+	private int addColumn(long name) {
+		
+		if(numColumns == objCoeffs.length) {
+			int capacity = 2 * numColumns;
+			objCoeffs = Arrays.copyOf(objCoeffs, capacity);
+			integers = Arrays.copyOf(integers, capacity);
+			lowerBounds = Arrays.copyOf(lowerBounds, capacity);
+			upperBounds = Arrays.copyOf(upperBounds, capacity);
+			upperSet = Arrays.copyOf(upperSet, capacity);
+		}
+		integers[numColumns] = integer;
+		upperBounds[numColumns] = Double.MAX_VALUE;
+		columnIndex.put(name, numColumns);
+		
+		return numColumns++;
+	}
+	
+	private void addEntry(int row, int column, double value) {
+		
+		if(numEntries == entryValues.length) {
+			int capacity = 2 * numEntries;
+			entryRows = Arrays.copyOf(entryRows, capacity);
+			entryColumns = Arrays.copyOf(entryColumns, capacity);
+			entryValues = Arrays.copyOf(entryValues, capacity);
+		}
+		entryRows[numEntries] = row;
+		entryColumns[numEntries] = column;
+		entryValues[numEntries++] = value;
+	}
+	
+	private void rhs() throws IOException {
+		
+		if(fields != 2 && fields != 3 && fields != 4 && fields != 5) {
+			throw error("Invalid right-hand side entry");
+		}
+		
+		for(int field = fields % 2; field < fields; field += 2) {
+			int row = row(field);
+			if(row >= 0) {
+				freeTerms[row] = number(field + 1);
+			}
+		}
+	}
+	
+	private void range() throws IOException {
+		
+		if(fields != 2 && fields != 3 && fields != 4 && fields != 5) {
+			throw error("Invalid range entry");
+		}
+		
+		for(int field = fields % 2; field < fields; field += 2) {
+			int row = row(field);
+			if(row >= 0) {
+				ranges[row] = number(field + 1);
+			}
+		}
+	}
+	
+	private void bound() throws IOException {
+		
+		if(fields < 2 || fields > 4 || fieldEnd[0] - fieldStart[0] != 2) {
+			throw error("Invalid bound");
+		}
+		
+		boolean valued = is(0, "UP") || is(0, "LO") || is(0, "FX") || is(0, "LI") || is(0, "UI");
+		int field = fields == 4 || (fields == 3 && !valued) ? 2 : 1;
+		// Columns with no nonzeros only appear in the BOUNDS section
+		int column = column(field);
+		if(valued && field + 1 >= fields) {
+			throw error("Missing bound value");
+		}
+		double value = field + 1 < fields ? number(field + 1) : 0;
+		
+		if(is(0, "UP") || is(0, "UI")) {
+			upperBounds[column] = value;
+			upperSet[column] = true;
+			integers[column] |= is(0, "UI");
+		} else if(is(0, "LO") || is(0, "LI")) {
+			lowerBounds[column] = value;
+			integers[column] |= is(0, "LI");
+		} else if(is(0, "FX")) {
+			lowerBounds[column] = value;
+			upperBounds[column] = value;
+			upperSet[column] = true;
+		} else if(is(0, "FR")) {
+			lowerBounds[column] = -Double.MAX_VALUE;
+			upperBounds[column] = Double.MAX_VALUE;
+			upperSet[column] = true;
+		} else if(is(0, "MI")) {
+			lowerBounds[column] = -Double.MAX_VALUE;
+		} else if(is(0, "PL")) {
+			upperBounds[column] = Double.MAX_VALUE;
+			upperSet[column] = true;
+		} else if(is(0, "BV")) {
+			lowerBounds[column] = 0;
+			upperBounds[column] = 1;
+			upperSet[column] = true;
+			integers[column] = true;
+		} else {
+			throw error("Unsupported bound type " + text(0));
+		}
+	}
+	
+	private Problem problem() {
+		
+		BitSet integerSet = new BitSet(numColumns);
+		for(int x = 0; x < numColumns; x++) {
+			if(integers[x]) {
+				integerSet.set(x);
+				// Integer variables with no upper bound are binary
+				if(!upperSet[x]) upperBounds[x] = 1;
+			}
+		}
+		VariableTable variables = new VariableTable(
+			Arrays.copyOf(objCoeffs, numColumns),
+			Arrays.copyOf(lowerBounds, numColumns),
+			Arrays.copyOf(upperBounds, numColumns),
+			integerSet
+		);
+		
+		int starts[] = new int[numRows + 1];
+		for(int k = 0; k < numEntries; k++) {
+			starts[entryRows[k] + 1]++;
+		}
+		for(int c = 0; c < numRows; c++) {
+			starts[c + 1] += starts[c];
+		}
+		int next[] = Arrays.copyOf(starts, numRows);
+		int indices[] = new int[numEntries];
+		double values[] = new double[numEntries];
+		for(int k = 0; k < numEntries; k++) {
+			int position = next[entryRows[k]]++;
+			indices[position] = entryColumns[k];
+			values[position] = entryValues[k];
+		}
+		entryRows = entryColumns = null;
+		entryValues = null;
+		
+		ProblemBuilder builder = new ProblemBuilder(variables)
+			.addConstraintsCSR(starts, indices, values,
+				Arrays.copyOf(rowTypes, numRows), Arrays.copyOf(freeTerms, numRows), true);
+		for(int c = 0; ranges != null && c < numRows; c++) {
+			if(ranges[c] != 0) {
+				builder.setRange(c, ranges[c]);
+			}
+		}
+		
+		return builder.build();
+	}
+	
+	private int row(int field) throws IOException {
+		
+		if(generatedRows) {
+			int number = MPSFormatter.nameNumber(chunk, fieldStart[field], fieldEnd[field], 'C');
+			if(number >= 1 && number <= numRows) {
+				return number - 1;
+			}
+		}
+		
+		int row = rowIndex.get(name(field));
+		if(row == -1) {
+			throw error("Unknown row " + text(field));
+		}
+		
+		return row;
+	}
+	
+	private long name(int field) throws IOException {
+		
+		long name = NameIndex.pack(chunk, fieldStart[field], fieldEnd[field]);
+		if(name == 0) {
+			throw error("Name longer than eight characters " + text(field));
+		}
+		
+		return name;
+	}
+	
+	private boolean is(int field, String keyword) {
+		
+		if(fieldEnd[field] - fieldStart[field] != keyword.length()) {
+			return false;
+		}
+		for(int i = 0; i < keyword.length(); i++) {
+			if(chunk[fieldStart[field] + i] != keyword.charAt(i)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/*
+	 * Parses a decimal number. When its significant digits fit in a
+	 * long below 2^53 and its exponent is small, it is computed with a
+	 * single rounding and so it is exact; otherwise Double.parseDouble
+	 * is used
+	 */
+	private double number(int field) throws IOException {
+		
+		int i = fieldStart[field], to = fieldEnd[field];
+		boolean negative = false;
+		if(i < to && (chunk[i] == '+' || chunk[i] == '-')) {
+			negative = chunk[i++] == '-';
+		}
+		
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean exact = true;
+		for(; i < to && chunk[i] >= '0' && chunk[i] <= '9'; i++, digits++) {
+			if(mantissa < 100000000000000000L) {
+				mantissa = 10 * mantissa + (chunk[i] - '0');
+			} else {
+				exact &= chunk[i] == '0';
+				exponent++;
+			}
+		}
+		if(i < to && chunk[i] == '.') {
+			for(i++; i < to && chunk[i] >= '0' && chunk[i] <= '9'; i++, digits++) {
+				if(mantissa < 100000000000000000L) {
+					mantissa = 10 * mantissa + (chunk[i] - '0');
+					exponent--;
+				} else {
+					exact &= chunk[i] == '0';
+				}
+			}
+		}
+		if(digits > 0 && i < to && (chunk[i] == 'e' || chunk[i] == 'E') && i + 1 < to) {
+			boolean negativeExponent = false;
+			if(chunk[i + 1] == '+' || chunk[i + 1] == '-') {
+				negativeExponent = chunk[++i] == '-';
+			}
+			int value = 0;
+			for(i++; i < to && chunk[i] >= '0' && chunk[i] <= '9' && value < 100000; i++) {
+				value = 10 * value + (chunk[i] - '0');
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+		
+		if(digits > 0 && i == to && exact && mantissa < (1L << 53) && Math.abs(exponent) < POWERS.length) {
+			double value = exponent < 0 ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+			return negative ? -value : value;
+		}
+		
+		try {
+			return Double.parseDouble(text(field));
+		} catch (NumberFormatException e) {
+			throw error("Invalid number " + text(field));
+		}
+	}
+	
+	private String text(int field) {
+		return new String(chunk, fieldStart[field], fieldEnd[field] - fieldStart[field], StandardCharsets.US_ASCII);
+	}
+	
+	private IOException error(String message) {
+		return new IOException("Line " + line + ": " + message);
+	}
+	
+}
\ No newline at end of file
@@ -18,10 +18,26 @@
 
 package dev.irzinfante.fixedmps.util;
 
-import java.util.HashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
 
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+import dev.irzinfante.fixedmps.constant.Section;
+import dev.irzinfante.fixedmps.core.DecomposedProblem;
+import dev.irzinfante.fixedmps.core.OffHeapProblem;
 import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.SparseMatrix;
+import dev.irzinfante.fixedmps.core.VariableTable;
 
 /**
  * @author      irzinfante iker@irzinfante.dev
@@ -29,19 +45,6 @@ import dev.irzinfante.fixedmps.core.Problem;
  */
 public class MPSUtil {
 	
-	private static final String TITLE = "FIXEDMPS";
-	private static final String COST = "OBJ";
-	private static final String INT1 = "INT1";
-	private static final String RHS1 = "RHS1";
-	private static final String BND1 = "BND1";
-	
-	private static final String NAME = "NAME";
-	private static final String ROWS = "ROWS";
-	private static final String COLUMNS = "COLUMNS";
-	private static final String RHS = "RHS";
-	private static final String BOUNDS = "BOUNDS";
-	private static final String ENDATA = "ENDATA";
-	
 	private MPSUtil() {
 	}
 	
@@ -53,86 +56,749 @@ public class MPSUtil {
 	 * @since	1.0.0
 	 */
 	public static String obtainMPSfile(Problem problem) {
-			
-		String MPS = String.format("%-14.14s%-8.8s%n", NAME, TITLE);
-		
-		MPS += String.format("%-14.14s%n", ROWS);
-		MPS += String.format(" %-2.2s %-8.8s%n", 'N', COST);
-		for(int c = 0; c < problem.getRows().length; c++) {
-			MPS += String.format(" %-2.2s %-8.8s%n", problem.getRows()[c].getType(), String.format("C%07d", c+1));
-		}
-		
-		MPS += String.format("%-14.14s%n", COLUMNS);
-		String integerPart = "";
-		String realPart = "";
-		String column;
-		String var;
-		Map<String, Double> map;
-		for(int x = 0; x < problem.getColumns().length; x++) {
-			column = "";
-			var = String.format("X%07d", x+1);
-			map = new HashMap<String, Double>();
-			
-			if(problem.getColumns()[x].getObjCoeff() != 0) {
-				map.put(COST, bound(problem.getColumns()[x].getObjCoeff()));
+		
+		ByteArrayOutputStream MPS = new ByteArrayOutputStream();
+		try {
+			write(problem, new MPSWriter(MPS));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return MPS.toString(StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a character stream,
+	 * section by section, as it is generated. The writer is
+	 * flushed but not closed
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	out	Destination of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static void writeMPS(Problem problem, Writer out) throws IOException {
+		
+		write(problem, new MPSWriter(new WriterOutputStream(out)));
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a byte stream in ASCII,
+	 * section by section, as it is generated. The stream is
+	 * flushed but not closed
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	out	Destination of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static void writeMPS(Problem problem, OutputStream out) throws IOException {
+		
+		write(problem, new MPSWriter(out));
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a file in ASCII,
+	 * creating or truncating it
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static void writeMPS(Problem problem, Path path) throws IOException {
+		
+		try (OutputStream out = Files.newOutputStream(path)) {
+			write(problem, new MPSWriter(out));
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a byte stream in ASCII,
+	 * measuring its generation. The stream is flushed but not closed
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	out	Destination of the MPS file
+	 * @return	measurements of the generation
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static EmissionStats writeMPSWithStats(Problem problem, OutputStream out) throws IOException {
+		
+		return writeWithStats(new ProblemSource(problem), out);
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a file in ASCII,
+	 * creating or truncating it, and measuring its generation
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the MPS file
+	 * @return	measurements of the generation
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static EmissionStats writeMPSWithStats(Problem problem, Path path) throws IOException {
+		
+		try (OutputStream out = Files.newOutputStream(path)) {
+			return writeMPSWithStats(problem, out);
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of an OffHeapProblem to a byte stream in
+	 * ASCII, reading the matrix sequentially. The stream is flushed
+	 * but not closed
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	out	Destination of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static void writeMPS(OffHeapProblem problem, OutputStream out) throws IOException {
+		
+		write(problem, new MPSWriter(out));
+	}
+	
+	/**
+	 * Writes the MPS file of an OffHeapProblem to a file in ASCII,
+	 * creating or truncating it
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static void writeMPS(OffHeapProblem problem, Path path) throws IOException {
+		
+		try (OutputStream out = Files.newOutputStream(path)) {
+			write(problem, new MPSWriter(out));
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of an OffHeapProblem to a byte stream in
+	 * ASCII, measuring its generation. The stream is flushed but
+	 * not closed
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	out	Destination of the MPS file
+	 * @return	measurements of the generation
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static EmissionStats writeMPSWithStats(OffHeapProblem problem, OutputStream out) throws IOException {
+		
+		return writeWithStats(new OffHeapSource(problem), out);
+	}
+	
+	/**
+	 * Writes the MPS file of an OffHeapProblem to a file in ASCII,
+	 * creating or truncating it, and measuring its generation
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the MPS file
+	 * @return	measurements of the generation
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static EmissionStats writeMPSWithStats(OffHeapProblem problem, Path path) throws IOException {
+		
+		try (OutputStream out = Files.newOutputStream(path)) {
+			return writeMPSWithStats(problem, out);
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of a problem saved with
+	 * {@link OffHeapProblem#save(Problem, Path)} to a byte stream
+	 * in ASCII, mapping the file instead of loading it. The stream
+	 * is flushed but not closed
+	 *
+	 * @param	snapshot	Path of the saved problem
+	 * @param	out	Destination of the MPS file
+	 * @throws	IOException	If an I/O error occurs or the saved problem is not valid
+	 * @since	2.1.0
+	 */
+	public static void convertSnapshot(Path snapshot, OutputStream out) throws IOException {
+		
+		try (OffHeapProblem problem = OffHeapProblem.open(snapshot)) {
+			writeMPS(problem, out);
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of a problem saved with
+	 * {@link OffHeapProblem#save(Problem, Path)} to a file in
+	 * ASCII, creating or truncating it
+	 *
+	 * @param	snapshot	Path of the saved problem
+	 * @param	path	Path of the MPS file
+	 * @throws	IOException	If an I/O error occurs or the saved problem is not valid
+	 * @since	2.1.0
+	 */
+	public static void convertSnapshot(Path snapshot, Path path) throws IOException {
+		
+		try (OffHeapProblem problem = OffHeapProblem.open(snapshot)) {
+			writeMPS(problem, path);
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a file in ASCII, creating
+	 * or truncating it, using all the threads of the common
+	 * fork-join pool. The exact size of the file is computed
+	 * first, and blocks of rows, columns, free terms and bounds
+	 * are rendered concurrently straight into the mapped file
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static void writeMPSParallel(Problem problem, Path path) throws IOException {
+		
+		writeMPSParallel(problem, path, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a file in ASCII, creating
+	 * or truncating it, using the threads of a fork-join pool
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the MPS file
+	 * @param	pool	Pool in which the file is rendered
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public static void writeMPSParallel(Problem problem, Path path, ForkJoinPool pool) throws IOException {
+		
+		ParallelMPSWriter.write(problem, path, pool);
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a gzip file, creating or
+	 * truncating it. The file is compressed while it is rendered, in
+	 * the threads of the common fork-join pool
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the compressed MPS file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 * @see	ParallelGzipOutputStream
+	 */
+	public static void writeMPSGzip(Problem problem, Path path) throws IOException {
+		
+		writeMPSGzip(problem, path, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a gzip file, creating or
+	 * truncating it, compressing it in the threads of a fork-join pool
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the compressed MPS file
+	 * @param	pool	Pool in which the file is compressed
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 * @see	ParallelGzipOutputStream
+	 */
+	public static void writeMPSGzip(Problem problem, Path path, ForkJoinPool pool) throws IOException {
+		
+		try (OutputStream out = new ParallelGzipOutputStream(Files.newOutputStream(path), pool, Deflater.DEFAULT_COMPRESSION)) {
+			write(problem, new MPSWriter(out));
+		}
+	}
+	
+	/**
+	 * Writes the MPS file of each block of a decomposed problem
+	 * to a directory, created if needed, with a {@link BatchMPSWriter}
+	 * of default settings. The file of block {@code b} is named as
+	 * the constraint {@code b} would be, but with a B prefix, such
+	 * as {@code B0000001.mps} for the first block
+	 *
+	 * @param	decomposed	The independent LP problems
+	 * @param	directory	Directory of the MPS files
+	 * @return	results of the batch
+	 * @throws	IOException	If the directory cannot be created
+	 * @throws	InterruptedException	If the thread is interrupted while waiting
+	 * @since	2.1.0
+	 */
+	public static BatchStats writeMPS(DecomposedProblem decomposed, Path directory) throws IOException, InterruptedException {
+		
+		Files.createDirectories(directory);
+		Problem problems[] = decomposed.getProblems();
+		
+		return new BatchMPSWriter.BatchMPSWriterBuilder().build().write(IntStream.range(0, problems.length)
+			.mapToObj(b -> Map.entry(problems[b], directory.resolve(name('B', b) + ".mps"))));
+	}
+	
+	/**
+	 * Reads a fixed MPS file into a Problem. The rows and columns
+	 * keep the order of the file, with the first N row as objective
+	 * function. Names must not contain spaces, and integer variables
+	 * with no upper bound are taken as binary
+	 *
+	 * @param	path	Path of the MPS file
+	 * @return	LP problem of the file
+	 * @throws	IOException	If an I/O error occurs or the file is not valid
+	 * @since	2.1.0
+	 */
+	public static Problem readMPS(Path path) throws IOException {
+		
+		return MPSReader.read(path);
+	}
+	
+	/**
+	 * Returns the name given to a constraint in the MPS files.
+	 * Constraints after the 9,999,999th are named with base-36
+	 * digits, so every name has eight characters
+	 *
+	 * @param	row	Zero-based index of the constraint
+	 * @return	name of the constraint
+	 * @since	2.1.0
+	 */
+	public static String rowName(int row) {
+		
+		return name('C', row);
+	}
+	
+	/**
+	 * Returns the name given to a variable in the MPS files.
+	 * Variables after the 9,999,999th are named with base-36
+	 * digits, so every name has eight characters
+	 *
+	 * @param	column	Zero-based index of the variable
+	 * @return	name of the variable
+	 * @since	2.1.0
+	 */
+	public static String columnName(int column) {
+		
+		return name('X', column);
+	}
+	
+	/**
+	 * Returns the index of a constraint from its name in the
+	 * MPS files, as in a solution file of a solver
+	 *
+	 * @param	name	Name of the constraint
+	 * @return	zero-based index of the constraint, or -1 if the name is not one of a constraint
+	 * @since	2.1.0
+	 */
+	public static int rowIndex(String name) {
+		
+		return index('C', name);
+	}
+	
+	/**
+	 * Returns the index of a variable from its name in the
+	 * MPS files, as in a solution file of a solver
+	 *
+	 * @param	name	Name of the variable
+	 * @return	zero-based index of the variable, or -1 if the name is not one of a variable
+	 * @since	2.1.0
+	 */
+	public static int columnIndex(String name) {
+		
+		return index('X', name);
+	}
+	
+	private static String name(char prefix, int index) {
+		
+		byte name[] = new byte[MPSFormatter.NAME_WIDTH];
+		MPSFormatter.name(name, 0, prefix, index + 1);
+		
+		return new String(name, StandardCharsets.US_ASCII);
+	}
+	
+	private static int index(char prefix, String name) {
+		
+		byte bytes[] = name.getBytes(StandardCharsets.US_ASCII);
+		int number = MPSFormatter.nameNumber(bytes, 0, bytes.length, prefix);
+		
+		return number >= 1 ? number - 1 : -1;
+	}
+	
+	private static EmissionStats writeWithStats(ColumnSource problem, OutputStream out) throws IOException {
+		
+		EmissionStats stats = new EmissionStats(problem.getRowTypes().length, problem.getVariables().size(), problem.getNonzeros());
+		write(problem, new MPSWriter(out), stats);
+		countClamped(problem, stats);
+		
+		return stats;
+	}
+	
+	private static void write(Problem problem, MPSWriter MPS) throws IOException {
+		
+		write(new ProblemSource(problem), MPS, null);
+	}
+	
+	private static void write(OffHeapProblem problem, MPSWriter MPS) throws IOException {
+		
+		write(new OffHeapSource(problem), MPS, null);
+	}
+	
+	private static void write(ColumnSource problem, MPSWriter MPS, EmissionStats stats) throws IOException {
+		
+		EmitEvent event = new EmitEvent();
+		event.begin();
+		Meter meter = new Meter(MPS, stats);
+		
+		MPS.header();
+		for(int c = 0; c < problem.getRowTypes().length; c++) {
+			MPS.row(problem.getRowTypes()[c], c);
+		}
+		meter.end(Section.ROWS);
+		long start = System.nanoTime();
+		problem.prepare();
+		if(stats != null) {
+			stats.setTransposeNanos(System.nanoTime() - start);
+		}
+		writeColumns(problem, MPS);
+		meter.end(Section.COLUMNS);
+		MPS.section(MPSWriter.RHS);
+		for(int c = 0; c < problem.getFreeTerms().length; c++) {
+			MPS.rhs(c, problem.getFreeTerms()[c]);
+		}
+		meter.end(Section.RHS);
+		if(problem.hasRanges()) {
+			MPS.section(MPSWriter.RANGES);
+			for(int c = 0; c < problem.getRanges().length; c++) {
+				MPS.range(c, problem.getRanges()[c]);
 			}
-			
-			for(int c = 0; c < problem.getRows().length; c++) {
-				if(problem.getRows()[c].getCoeffs()[x] != 0) {
-					map.put(String.format("C%07d", c+1), bound(problem.getRows()[c].getCoeffs()[x]));
-				}
+		}
+		meter.end(Section.RANGES);
+		writeBounds(problem.getVariables(), MPS);
+		MPS.end();
+		meter.end(Section.BOUNDS);
+		
+		event.end();
+		if(event.shouldCommit()) {
+			event.rows = problem.getRowTypes().length;
+			event.columns = problem.getVariables().size();
+			event.nonzeros = problem.getNonzeros();
+			event.bytes = MPS.size();
+			event.commit();
+		}
+		if(stats != null) {
+			stats.setOutputNanos(MPS.outputNanos());
+		}
+	}
+	
+	private static void writeColumns(ColumnSource problem, MPSWriter MPS) throws IOException {
+		
+		MPS.section(MPSWriter.COLUMNS);
+		VariableTable variables = problem.getVariables();
+		boolean marker = false;
+		for(int x = variables.getIntegers().nextSetBit(0); x >= 0 && x < variables.size(); x = variables.getIntegers().nextSetBit(x + 1)) {
+			if(!marker && (variables.getObjCoeffs()[x] != 0 || problem.hasNonzeros(x))) {
+				MPS.marker(true);
+				marker = true;
 			}
-			
-			boolean odd = true;
-			for(String key : map.keySet()) {
-				if(odd) {
-					column += String.format("    %-8.8s  %-8.8s  %+.5e", var, key, bound(map.get(key)));
-				} else {
-					column += String.format("   %-8.8s  %+.5e%n", key, bound(map.get(key)));
+			problem.column(x, MPS);
+		}
+		if(marker) {
+			MPS.marker(false);
+		}
+		for(int x = variables.getIntegers().nextClearBit(0); x < variables.size(); x = variables.getIntegers().nextClearBit(x + 1)) {
+			problem.column(x, MPS);
+		}
+	}
+	
+	private static void writeBounds(VariableTable variables, MPSWriter MPS) throws IOException {
+		
+		MPS.section(MPSWriter.BOUNDS);
+		for(int x = 0; x < variables.size(); x++) {
+			MPS.bounds(x, variables.isInteger(x), variables.getLowerBounds()[x], variables.getUpperBounds()[x]);
+		}
+	}
+	
+	/*
+	 * Counts the numbers written to the file that are clamped, going
+	 * through them in the same way as the writer
+	 */
+	private static void countClamped(ColumnSource problem, EmissionStats stats) {
+		
+		VariableTable variables = problem.getVariables();
+		for(int x = 0; x < variables.size(); x++) {
+			stats.count(variables.getObjCoeffs()[x]);
+			double lower = variables.getLowerBounds()[x], upper = variables.getUpperBounds()[x];
+			if(variables.isInteger(x) && lower == 0 && upper == 1) {
+				continue;
+			} else if(lower == upper) {
+				stats.count(lower);
+				continue;
+			}
+			if(lower != 0 && lower > -Double.MAX_VALUE) {
+				stats.count(lower);
+			}
+			if(upper < Double.MAX_VALUE) {
+				stats.count(upper);
+			}
+		}
+		for(long k = 0; k < problem.getNonzeros(); k++) {
+			stats.count(problem.getValue(k));
+		}
+		for(double free : problem.getFreeTerms()) {
+			stats.count(free);
+		}
+		if(problem.hasRanges()) {
+			for(double range : problem.getRanges()) {
+				if(range != 0) {
+					stats.count(range);
 				}
-				odd = !odd;
 			}
-			if(!odd) column += String.format("%n", 0);
-			if(problem.getColumns()[x].isInteger()) integerPart += column;
-			else realPart += column;
 		}
-		if(!integerPart.equals("")) {
-			MPS += String.format("    %-8.8s  %-8.8s                 %-8.8s%n", INT1, "'MARKER'", "'INTORG'");
-			MPS += integerPart;
-			MPS += String.format("    %-8.8s  %-8.8s                 %-8.8s%n", INT1+"END", "'MARKER'", "'INTEND'");
+	}
+	
+	/*
+	 * Problem as seen by the writer, with the columns of its matrix
+	 * read from the heap or from off-heap storage
+	 */
+	private interface ColumnSource {
+		
+		VariableTable getVariables();
+		
+		ConstraintType[] getRowTypes();
+		
+		double[] getFreeTerms();
+		
+		boolean hasRanges();
+		
+		double[] getRanges();
+		
+		long getNonzeros();
+		
+		double getValue(long k);
+		
+		/*
+		 * Makes the columns available, before the COLUMNS section
+		 */
+		void prepare();
+		
+		boolean hasNonzeros(int x);
+		
+		void column(int x, MPSWriter MPS) throws IOException;
+		
+	}
+	
+	/*
+	 * Columns of a Problem, from its column-major copy of the matrix
+	 */
+	private static class ProblemSource implements ColumnSource {
+		
+		private Problem problem;
+		private SparseMatrix matrix;
+		
+		private ProblemSource(Problem problem) {
+			this.problem = problem;
+		}
+		
+		@Override
+		public VariableTable getVariables() {
+			return problem.getVariables();
+		}
+		
+		@Override
+		public ConstraintType[] getRowTypes() {
+			return problem.getRowTypes();
+		}
+		
+		@Override
+		public double[] getFreeTerms() {
+			return problem.getFreeTerms();
+		}
+		
+		@Override
+		public boolean hasRanges() {
+			return problem.hasRanges();
+		}
+		
+		@Override
+		public double[] getRanges() {
+			return problem.getRanges();
+		}
+		
+		@Override
+		public long getNonzeros() {
+			return problem.getMatrix().getNonzeros();
+		}
+		
+		@Override
+		public double getValue(long k) {
+			return problem.getMatrix().getValues()[(int) k];
+		}
+		
+		@Override
+		public void prepare() {
+			matrix = problem.getColumnMatrix();
+		}
+		
+		@Override
+		public boolean hasNonzeros(int x) {
+			return matrix.getStarts()[x] < matrix.getStarts()[x+1];
+		}
+		
+		@Override
+		public void column(int x, MPSWriter MPS) throws IOException {
+			
+			MPS.column(x, problem.getVariables().getObjCoeffs()[x], matrix.getIndices(), matrix.getValues(),
+				matrix.getStarts()[x], matrix.getStarts()[x+1]);
+		}
+		
+	}
+	
+	/*
+	 * Columns of an OffHeapProblem, read sequentially from its storage
+	 */
+	private static class OffHeapSource implements ColumnSource {
+		
+		private OffHeapProblem problem;
+		
+		private OffHeapSource(OffHeapProblem problem) {
+			this.problem = problem;
+		}
+		
+		@Override
+		public VariableTable getVariables() {
+			return problem.getVariables();
+		}
+		
+		@Override
+		public ConstraintType[] getRowTypes() {
+			return problem.getRowTypes();
+		}
+		
+		@Override
+		public double[] getFreeTerms() {
+			return problem.getFreeTerms();
+		}
+		
+		@Override
+		public boolean hasRanges() {
+			return problem.hasRanges();
+		}
+		
+		@Override
+		public double[] getRanges() {
+			return problem.getRanges();
+		}
+		
+		@Override
+		public long getNonzeros() {
+			return problem.getNonzeros();
 		}
-		MPS += realPart;
 		
-		MPS += String.format("%-14.14s%n", RHS);
-		for(int c = 0; c < problem.getRows().length; c++) {
-			MPS += String.format("    %-8.8s  %-8.8s  %+.5e%n", RHS1, String.format("C%07d", c+1), bound(problem.getRows()[c].getFree()));
+		@Override
+		public double getValue(long k) {
+			return problem.getValue(k);
 		}
 		
-		MPS += String.format("%-14.14s%n", BOUNDS);
-		for(int x = 0; x < problem.getColumns().length; x++) {
-			if(problem.getColumns()[x].getLowerBound() != 0) {
-				MPS += String.format(" %-2.2s %-8.8s  %-8.8s  %+.5e%n", "LO", BND1, String.format("X%07d", x+1), bound(problem.getColumns()[x].getLowerBound()));
+		@Override
+		public void prepare() {
+		}
+		
+		@Override
+		public boolean hasNonzeros(int x) {
+			return problem.getColumnStart(x) < problem.getColumnStart(x + 1);
+		}
+		
+		@Override
+		public void column(int x, MPSWriter MPS) throws IOException {
+			
+			if(problem.getVariables().getObjCoeffs()[x] != 0) {
+				MPS.entry(x, -1, problem.getVariables().getObjCoeffs()[x]);
 			}
-			if((problem.getColumns()[x].isInteger() && problem.getColumns()[x].getUpperBound() != 1)
-				||	(!problem.getColumns()[x].isInteger() && problem.getColumns()[x].getUpperBound() < Double.MAX_VALUE)) {
-				
-				MPS += String.format(" %-2.2s %-8.8s  %-8.8s  %+.5e%n", "UP", BND1, String.format("X%07d", x+1), bound(problem.getColumns()[x].getUpperBound()));
+			for(long k = problem.getColumnStart(x), end = problem.getColumnStart(x + 1); k < end; k++) {
+				MPS.entry(x, problem.getRow(k), problem.getValue(k));
 			}
+			MPS.endColumn();
 		}
 		
-		MPS += String.format("%-14.14s", ENDATA);
+	}
+	
+	/*
+	 * Measures the bytes and time of each section as it ends, and
+	 * records them in the statistics, if any, and in Flight Recorder
+	 */
+	private static class Meter {
+		
+		private MPSWriter MPS;
+		private EmissionStats stats;
+		private long size;
+		private long time;
+		private SectionEvent event;
+		
+		private Meter(MPSWriter MPS, EmissionStats stats) {
+			
+			this.MPS = MPS;
+			this.stats = stats;
+			this.size = MPS.size();
+			this.time = System.nanoTime();
+			this.event = new SectionEvent();
+			this.event.begin();
+		}
+		
+		private void end(Section section) {
+			
+			long size = MPS.size();
+			long time = System.nanoTime();
+			if(stats != null) {
+				stats.section(section, size - this.size, time - this.time);
+			}
+			event.end();
+			if(event.shouldCommit()) {
+				event.section = section.name();
+				event.bytes = size - this.size;
+				event.commit();
+			}
+			
+			this.size = size;
+			this.time = time;
+			this.event = new SectionEvent();
+			this.event.begin();
+		}
 		
-		return MPS.replaceAll(",", ".").trim();
 	}
 	
-	static private double bound(double num) {
-		if( num == 0) {
-			return 0;
-		} else if (num > 0) {
-			return Math.max(Math.min(Math.pow(10, 10), num), Math.pow(10, -10));
-		} else {
-			return Math.min(Math.max(-Math.pow(10, 10), num), -Math.pow(10, -10));
+	/*
+	 * Passes the ASCII bytes of the MPS file to a character stream
+	 */
+	private static class WriterOutputStream extends OutputStream {
+		
+		private Writer writer;
+		private char chars[];
+		
+		private WriterOutputStream(Writer writer) {
+			
+			this.writer = writer;
+			this.chars = new char[8192];
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			writer.write(b & 0xFF);
 		}
+		
+		@Override
+		public void write(byte b[], int off, int len) throws IOException {
+			
+			while(len > 0) {
+				int count = Math.min(len, chars.length);
+				for(int i = 0; i < count; i++) {
+					chars[i] = (char) (b[off + i] & 0xFF);
+				}
+				writer.write(chars, 0, count);
+				off += count;
+				len -= count;
+			}
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+		
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,509 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import dev.irzinfante.fixedmps.constant.ConstraintType;
+
+/**
+ * Emits the lines of a fixed MPS file into a reusable byte
+ * buffer, which is written to the output stream each time it
+ * fills up. The sections have to be emitted in file order
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+final class MPSWriter {
+	
+	static final String TITLE = "FIXEDMPS";
+	static final String COST = "OBJ";
+	static final String INT1 = "INT1";
+	static final String RHS1 = "RHS1";
+	static final String RNG1 = "RNG1";
+	static final String BND1 = "BND1";
+	
+	static final String NAME = "NAME";
+	static final String ROWS = "ROWS";
+	static final String COLUMNS = "COLUMNS";
+	static final String RHS = "RHS";
+	static final String RANGES = "RANGES";
+	static final String BOUNDS = "BOUNDS";
+	static final String ENDATA = "ENDATA";
+	
+	static final byte SEPARATOR[] = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_LINE = 128;
+	
+	private OutputStream out;
+	private byte buffer[];
+	private int position;
+	private boolean openLine;
+	private long written;
+	private long outputNanos;
+	
+	MPSWriter(OutputStream out) {
+		this(out, BUFFER_SIZE);
+	}
+	
+	MPSWriter(OutputStream out, int bufferSize) {
+		
+		this.out = out;
+		this.buffer = new byte[Math.max(bufferSize, MAX_LINE)];
+		this.position = 0;
+		this.openLine = false;
+		this.written = 0;
+		this.outputNanos = 0;
+	}
+	
+	/**
+	 * Writes the NAME line, the ROWS header and the objective row
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void header() throws IOException {
+		
+		reserve();
+		position = MPSFormatter.text(buffer, position, NAME, 14);
+		position = MPSFormatter.text(buffer, position, TITLE, 8);
+		newLine();
+		section(ROWS);
+		reserve();
+		position = MPSFormatter.text(buffer, position, " N  ");
+		position = MPSFormatter.text(buffer, position, COST, 8);
+		newLine();
+	}
+	
+	/**
+	 * Writes a line of the ROWS section
+	 *
+	 * @param	type	Type of the constraint
+	 * @param	row	Zero-based index of the constraint
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void row(ConstraintType type, int row) throws IOException {
+		
+		reserve();
+		buffer[position++] = ' ';
+		position = MPSFormatter.text(buffer, position, type.name(), 2);
+		buffer[position++] = ' ';
+		position = MPSFormatter.name(buffer, position, 'C', row + 1);
+		newLine();
+	}
+	
+	/**
+	 * Writes a section header line, such as COLUMNS, RHS or BOUNDS
+	 *
+	 * @param	name	Name of the section
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void section(String name) throws IOException {
+		
+		reserve();
+		position = MPSFormatter.text(buffer, position, name, 14);
+		newLine();
+	}
+	
+	/**
+	 * Writes the marker line that opens or closes the
+	 * integer variables of the COLUMNS section
+	 *
+	 * @param	start	Whether the marker opens the integer variables
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void marker(boolean start) throws IOException {
+		
+		reserve();
+		position = MPSFormatter.spaces(buffer, position, 4);
+		position = MPSFormatter.text(buffer, position, start ? INT1 : INT1+"END", 8);
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.text(buffer, position, "'MARKER'", 8);
+		position = MPSFormatter.spaces(buffer, position, 17);
+		position = MPSFormatter.text(buffer, position, start ? "'INTORG'" : "'INTEND'", 8);
+		newLine();
+	}
+	
+	/**
+	 * Writes a nonzero of a column, two to a line. The entries
+	 * of each column have to be followed by {@link #endColumn()}
+	 *
+	 * @param	column	Zero-based index of the variable
+	 * @param	row	Zero-based index of the constraint, or
+	 * a negative number for the objective function
+	 * @param	value	Coefficient of the variable
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void entry(int column, int row, double value) throws IOException {
+		
+		reserve();
+		if(!openLine) {
+			position = MPSFormatter.spaces(buffer, position, 4);
+			position = MPSFormatter.name(buffer, position, 'X', column + 1);
+		} else {
+			buffer[position++] = ' ';
+		}
+		position = MPSFormatter.spaces(buffer, position, 2);
+		if(row < 0) {
+			position = MPSFormatter.text(buffer, position, COST, 8);
+		} else {
+			position = MPSFormatter.name(buffer, position, 'C', row + 1);
+		}
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.number(buffer, position, MPSFormatter.bound(value));
+		if(openLine) {
+			newLine();
+		}
+		openLine = !openLine;
+	}
+	
+	/**
+	 * Ends the line of the last nonzero of a column when it
+	 * is left alone in it
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void endColumn() throws IOException {
+		
+		if(openLine) {
+			newLine();
+			openLine = false;
+		}
+	}
+	
+	/**
+	 * Writes all the nonzeros of a column
+	 *
+	 * @param	column	Zero-based index of the variable
+	 * @param	objective	Coefficient of the variable in the objective function
+	 * @param	rows	Indices of the constraints
+	 * @param	values	Coefficients of the variable in the constraints
+	 * @param	from	Position of the first nonzero of the column
+	 * @param	to	Position after the last nonzero of the column
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void column(int column, double objective, int rows[], double values[], int from, int to) throws IOException {
+		
+		if(objective != 0) {
+			entry(column, -1, objective);
+		}
+		for(int k = from; k < to; k++) {
+			entry(column, rows[k], values[k]);
+		}
+		endColumn();
+	}
+	
+	/**
+	 * Returns the number of bytes written by
+	 * {@link #column(int, double, int[], double[], int, int)}
+	 *
+	 * @param	objective	Coefficient of the variable in the objective function
+	 * @param	values	Coefficients of the variable in the constraints
+	 * @param	from	Position of the first nonzero of the column
+	 * @param	to	Position after the last nonzero of the column
+	 * @return	size of the column in the MPS file
+	 * @since	2.1.0
+	 */
+	static long columnSize(double objective, double values[], int from, int to) {
+		
+		long size = 0;
+		int entries = 0;
+		if(objective != 0) {
+			size += 24 + MPSFormatter.width(MPSFormatter.bound(objective));
+			entries++;
+		}
+		for(int k = from; k < to; k++) {
+			size += (entries % 2 == 0 ? 24 : 13) + MPSFormatter.width(MPSFormatter.bound(values[k]));
+			entries++;
+		}
+		
+		return size + (long) (entries + 1) / 2 * SEPARATOR.length;
+	}
+	
+	/**
+	 * Writes a line of the RHS section
+	 *
+	 * @param	row	Zero-based index of the constraint
+	 * @param	value	Free term of the constraint
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void rhs(int row, double value) throws IOException {
+		
+		reserve();
+		position = MPSFormatter.spaces(buffer, position, 4);
+		position = MPSFormatter.text(buffer, position, RHS1, 8);
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.name(buffer, position, 'C', row + 1);
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.number(buffer, position, MPSFormatter.bound(value));
+		newLine();
+	}
+	
+	/**
+	 * Returns the number of bytes written by {@link #rhs(int, double)}
+	 *
+	 * @param	value	Free term of the constraint
+	 * @return	size of the line in the MPS file
+	 * @since	2.1.0
+	 */
+	static long rhsSize(double value) {
+		
+		return 24 + MPSFormatter.width(MPSFormatter.bound(value)) + SEPARATOR.length;
+	}
+	
+	/**
+	 * Writes the line of the RANGES section of a constraint, if
+	 * it has a range
+	 *
+	 * @param	row	Zero-based index of the constraint
+	 * @param	range	Range of the constraint, or zero for none
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void range(int row, double range) throws IOException {
+		
+		if(range == 0) {
+			return;
+		}
+		reserve();
+		position = MPSFormatter.spaces(buffer, position, 4);
+		position = MPSFormatter.text(buffer, position, RNG1, 8);
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.name(buffer, position, 'C', row + 1);
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.number(buffer, position, MPSFormatter.bound(range));
+		newLine();
+	}
+	
+	/**
+	 * Returns the number of bytes written by {@link #range(int, double)}
+	 *
+	 * @param	range	Range of the constraint, or zero for none
+	 * @return	size of the line in the MPS file
+	 * @since	2.1.0
+	 */
+	static long rangeSize(double range) {
+		
+		return range == 0 ? 0 : rhsSize(range);
+	}
+	
+	/**
+	 * Writes the lines of the BOUNDS section of a variable, with
+	 * the most compact bound types: BV for binary variables, FX for
+	 * equal bounds, FR, MI and PL for infinite bounds, and LO and UP
+	 * otherwise. A lower bound of zero is not written, nor an infinite
+	 * upper bound of a real variable. Bounds of magnitude
+	 * {@link Double#MAX_VALUE} or more are infinite
+	 *
+	 * @param	column	Zero-based index of the variable
+	 * @param	integer	Whether the variable is integer
+	 * @param	lower	Lower bound of the variable
+	 * @param	upper	Upper bound of the variable
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void bounds(int column, boolean integer, double lower, double upper) throws IOException {
+		
+		boolean noLower = lower <= -Double.MAX_VALUE, noUpper = upper >= Double.MAX_VALUE;
+		if(integer && lower == 0 && upper == 1) {
+			bound("BV", column);
+		} else if(lower == upper) {
+			bound("FX", column, lower);
+		} else if(noLower && noUpper) {
+			bound("FR", column);
+		} else {
+			if(noLower) {
+				bound("MI", column);
+			} else if(lower != 0) {
+				bound("LO", column, lower);
+			}
+			// Integer variables with no upper bound would be read as binary
+			if(!noUpper) {
+				bound("UP", column, upper);
+			} else if(integer) {
+				bound("PL", column);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of bytes written by
+	 * {@link #bounds(int, boolean, double, double)}
+	 *
+	 * @param	integer	Whether the variable is integer
+	 * @param	lower	Lower bound of the variable
+	 * @param	upper	Upper bound of the variable
+	 * @return	size of the lines in the MPS file
+	 * @since	2.1.0
+	 */
+	static long boundsSize(boolean integer, double lower, double upper) {
+		
+		boolean noLower = lower <= -Double.MAX_VALUE, noUpper = upper >= Double.MAX_VALUE;
+		if(integer && lower == 0 && upper == 1) {
+			return 22 + SEPARATOR.length;
+		} else if(lower == upper) {
+			return 24 + MPSFormatter.width(MPSFormatter.bound(lower)) + SEPARATOR.length;
+		} else if(noLower && noUpper) {
+			return 22 + SEPARATOR.length;
+		}
+		
+		long size = 0;
+		if(noLower) {
+			size += 22 + SEPARATOR.length;
+		} else if(lower != 0) {
+			size += 24 + MPSFormatter.width(MPSFormatter.bound(lower)) + SEPARATOR.length;
+		}
+		if(!noUpper) {
+			size += 24 + MPSFormatter.width(MPSFormatter.bound(upper)) + SEPARATOR.length;
+		} else if(integer) {
+			size += 22 + SEPARATOR.length;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Writes a line of the BOUNDS section
+	 *
+	 * @param	type	Type of the bound, such as UP or LO
+	 * @param	column	Zero-based index of the variable
+	 * @param	value	Value of the bound
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void bound(String type, int column, double value) throws IOException {
+		
+		reserve();
+		boundName(type, column);
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.number(buffer, position, MPSFormatter.bound(value));
+		newLine();
+	}
+	
+	/**
+	 * Writes a line of the BOUNDS section with no value,
+	 * such as BV, FR, MI or PL
+	 *
+	 * @param	type	Type of the bound
+	 * @param	column	Zero-based index of the variable
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void bound(String type, int column) throws IOException {
+		
+		reserve();
+		boundName(type, column);
+		newLine();
+	}
+	
+	private void boundName(String type, int column) {
+		
+		buffer[position++] = ' ';
+		position = MPSFormatter.text(buffer, position, type, 2);
+		buffer[position++] = ' ';
+		position = MPSFormatter.text(buffer, position, BND1, 8);
+		position = MPSFormatter.spaces(buffer, position, 2);
+		position = MPSFormatter.name(buffer, position, 'X', column + 1);
+	}
+	
+	/**
+	 * Writes the ENDATA line, without line separator, and
+	 * flushes the buffer and the output stream
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void end() throws IOException {
+		
+		reserve();
+		position = MPSFormatter.text(buffer, position, ENDATA);
+		flush();
+	}
+	
+	/**
+	 * Writes the buffered bytes and flushes the output stream
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	void flush() throws IOException {
+		
+		drain();
+		long start = System.nanoTime();
+		out.flush();
+		outputNanos += System.nanoTime() - start;
+	}
+	
+	/**
+	 * Returns the number of bytes emitted so far,
+	 * including those still in the buffer
+	 * 
+	 * @return	bytes emitted
+	 * @since	2.1.0
+	 */
+	long size() {
+		return written + position;
+	}
+	
+	/**
+	 * Returns the time spent writing to and flushing the
+	 * output stream, measured once for each full buffer
+	 * 
+	 * @return	elapsed time in nanoseconds
+	 * @since	2.1.0
+	 */
+	long outputNanos() {
+		return outputNanos;
+	}
+	
+	private void newLine() {
+		
+		for(int i = 0; i < SEPARATOR.length; i++) {
+			buffer[position++] = SEPARATOR[i];
+		}
+	}
+	
+	private void reserve() throws IOException {
+		
+		if(buffer.length - position < MAX_LINE) {
+			drain();
+		}
+	}
+	
+	private void drain() throws IOException {
+		
+		long start = System.nanoTime();
+		out.write(buffer, 0, position);
+		outputNanos += System.nanoTime() - start;
+		written += position;
+		position = 0;
+	}
+	
+}
\ No newline at end of file
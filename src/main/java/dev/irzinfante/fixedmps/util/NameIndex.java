@@ -0,0 +1,136 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from the names of a fixed MPS file,
+ * packed in a long, to their zero-based index
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+final class NameIndex {
+	
+	private long keys[];
+	private int values[];
+	private int size;
+	private int shift;
+	
+	NameIndex() {
+		
+		this.keys = new long[16];
+		this.values = new int[16];
+		this.size = 0;
+		this.shift = 64 - 4;
+	}
+	
+	/**
+	 * Returns the index of a name
+	 *
+	 * @param	key	Name packed by {@link #pack(byte[], int, int)}
+	 * @return	index of the name, or -1 if it is not in the map
+	 * @since	2.1.0
+	 */
+	int get(long key) {
+		
+		for(int slot = slot(key); ; slot = (slot + 1) & (keys.length - 1)) {
+			if(keys[slot] == key) {
+				return values[slot];
+			} else if(keys[slot] == 0) {
+				return -1;
+			}
+		}
+	}
+	
+	/**
+	 * Maps a name to an index, replacing the previous index
+	 *
+	 * @param	key	Name packed by {@link #pack(byte[], int, int)}
+	 * @param	value	Index of the name
+	 * @since	2.1.0
+	 */
+	void put(long key, int value) {
+		
+		if(2 * (size + 1) > keys.length) {
+			grow();
+		}
+		
+		int slot = slot(key);
+		while(keys[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		if(keys[slot] == 0) {
+			size++;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+	}
+	
+	/**
+	 * Packs a name of up to eight ASCII characters in a nonzero long
+	 *
+	 * @param	bytes	Buffer holding the name
+	 * @param	from	Position of the first character of the name
+	 * @param	to	Position after the last character of the name
+	 * @return	packed name, or zero if it is empty or too long
+	 * @since	2.1.0
+	 */
+	static long pack(byte bytes[], int from, int to) {
+		
+		if(to <= from || to - from > 8) {
+			return 0;
+		}
+		
+		long key = 0;
+		for(int i = from; i < to; i++) {
+			key = (key << 8) | (bytes[i] & 0xFF);
+		}
+		
+		return key;
+	}
+	
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+	
+	private void grow() {
+		
+		long oldKeys[] = keys;
+		int oldValues[] = values;
+		
+		keys = new long[2 * oldKeys.length];
+		values = new int[2 * oldValues.length];
+		shift--;
+		Arrays.fill(keys, 0);
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != 0) {
+				int slot = slot(oldKeys[i]);
+				while(keys[slot] != 0) {
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+}
\ No newline at end of file
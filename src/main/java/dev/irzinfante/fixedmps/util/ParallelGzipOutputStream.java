@@ -0,0 +1,275 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a byte stream in gzip format while it is being
+ * written. The bytes are gathered in blocks of 1 MiB, which are
+ * deflated in the threads of a fork-join pool as independent gzip
+ * members, so compression overlaps with the writing thread and
+ * uses several cores. The members are written in order, which makes
+ * a valid gzip file for any reader of multi-member files, such as
+ * {@link java.util.zip.GZIPInputStream} or {@code gunzip}. The number
+ * of blocks in flight is bounded, and their buffers are reused
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+	
+	private static final int BLOCK_SIZE = 1 << 20;
+	private static final byte HEADER[] = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+	private static final int TRAILER_SIZE = 8;
+	
+	private OutputStream out;
+	private ForkJoinPool pool;
+	private int level;
+	private int maxPending;
+	
+	private Block block;
+	private ArrayDeque<Block> free;
+	private ArrayDeque<Future<Block>> pending;
+	private boolean written;
+	private boolean finished;
+	
+	/**
+	 * Initializes a stream compressed with the default level
+	 * in the common fork-join pool
+	 *
+	 * @param	out	Destination of the compressed bytes
+	 * @since	2.1.0
+	 */
+	public ParallelGzipOutputStream(OutputStream out) {
+		this(out, ForkJoinPool.commonPool(), Deflater.DEFAULT_COMPRESSION);
+	}
+	
+	/**
+	 * Initializes a stream compressed in a fork-join pool. Up to
+	 * two blocks per thread of the pool are in flight at once
+	 *
+	 * @param	out	Destination of the compressed bytes
+	 * @param	pool	Pool in which the blocks are compressed
+	 * @param	level	Compression level, from 0 to 9, or -1 for the default one
+	 * @since	2.1.0
+	 */
+	public ParallelGzipOutputStream(OutputStream out, ForkJoinPool pool, int level) {
+		
+		if((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		
+		this.out = out;
+		this.pool = pool;
+		this.level = level;
+		this.maxPending = 2 * Math.max(1, pool.getParallelism());
+		
+		this.block = new Block();
+		this.free = new ArrayDeque<>();
+		this.pending = new ArrayDeque<>();
+		this.written = false;
+		this.finished = false;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		
+		ensureOpen();
+		block.input[block.length++] = (byte) b;
+		if(block.length == BLOCK_SIZE) {
+			submit();
+		}
+	}
+	
+	@Override
+	public void write(byte b[], int off, int len) throws IOException {
+		
+		ensureOpen();
+		while(len > 0) {
+			int count = Math.min(len, BLOCK_SIZE - block.length);
+			System.arraycopy(b, off, block.input, block.length, count);
+			block.length += count;
+			off += count;
+			len -= count;
+			if(block.length == BLOCK_SIZE) {
+				submit();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the blocks compressed so far and flushes the output
+	 * stream. The bytes of the block being filled are not written
+	 * until it is full or the stream is finished
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	@Override
+	public void flush() throws IOException {
+		
+		while(!pending.isEmpty() && pending.peek().isDone()) {
+			drain();
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Compresses the remaining bytes and writes all the blocks,
+	 * without closing the output stream
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	public void finish() throws IOException {
+		
+		if(finished) {
+			return;
+		}
+		
+		// An empty stream still has to be a valid gzip file
+		if(block.length > 0 || !written) {
+			submit();
+		}
+		while(!pending.isEmpty()) {
+			drain();
+		}
+		out.flush();
+		finished = true;
+	}
+	
+	/**
+	 * Finishes the compressed stream and closes the output stream
+	 *
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	@Override
+	public void close() throws IOException {
+		
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+	
+	private void ensureOpen() throws IOException {
+		
+		if(finished) {
+			throw new IOException("The compressed stream is already finished");
+		}
+	}
+	
+	private void submit() throws IOException {
+		
+		Block full = block;
+		pending.add(pool.submit(() -> full.compress(level)));
+		written = true;
+		
+		if(pending.size() >= maxPending) {
+			drain();
+		}
+		block = free.isEmpty() ? new Block() : free.pop();
+	}
+	
+	private void drain() throws IOException {
+		
+		Block done;
+		try {
+			done = pending.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		
+		out.write(done.output, 0, done.outputLength);
+		done.length = 0;
+		free.push(done);
+	}
+	
+	/*
+	 * Bytes of a block and of its gzip member, reused for later blocks
+	 */
+	private static class Block {
+		
+		private byte input[] = new byte[BLOCK_SIZE];
+		private int length;
+		private byte output[] = new byte[0];
+		private int outputLength;
+		
+		private Block compress(int level) {
+			
+			CRC32 crc = new CRC32();
+			crc.update(input, 0, length);
+			
+			if(output.length < length + (length >> 3) + HEADER.length + TRAILER_SIZE + 64) {
+				output = new byte[length + (length >> 3) + HEADER.length + TRAILER_SIZE + 64];
+			}
+			System.arraycopy(HEADER, 0, output, 0, HEADER.length);
+			int position = HEADER.length;
+			
+			Deflater deflater = new Deflater(level, true);
+			try {
+				deflater.setInput(input, 0, length);
+				deflater.finish();
+				while(!deflater.finished()) {
+					if(output.length - position <= TRAILER_SIZE) {
+						output = Arrays.copyOf(output, 2 * output.length);
+					}
+					position += deflater.deflate(output, position, output.length - position - TRAILER_SIZE);
+				}
+			} finally {
+				deflater.end();
+			}
+			
+			position = littleEndian(output, position, (int) crc.getValue());
+			outputLength = littleEndian(output, position, length);
+			
+			return this;
+		}
+		
+		private static int littleEndian(byte buffer[], int position, int value) {
+			
+			for(int i = 0; i < 4; i++) {
+				buffer[position++] = (byte) (value >>> (8 * i));
+			}
+			
+			return position;
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+/**
+ * Library to easily generate fixed MPS files for LP solver
+ * Copyright (C) 2020-2024 Iker Ruiz de Infante Gonzalez <iker@irzinfante.dev>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package dev.irzinfante.fixedmps.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.SparseMatrix;
+import dev.irzinfante.fixedmps.core.VariableTable;
+
+/**
+ * Writes a MPS file with several threads. As every line of
+ * the file has a known width, the byte offset of each row, column
+ * and bound is computed beforehand, and the file is split into
+ * blocks that are memory-mapped and rendered independently
+ * 
+ * @author      irzinfante iker@irzinfante.dev
+ * @since       2.1.0
+ */
+final class ParallelMPSWriter {
+	
+	private static final long BLOCK_SIZE = 1 << 22;
+	
+	private static final int SEPARATOR = MPSWriter.SEPARATOR.length;
+	private static final int SECTION_SIZE = 14 + SEPARATOR;
+	private static final int HEADER_SIZE = 22 + SEPARATOR + SECTION_SIZE + 12 + SEPARATOR;
+	private static final int ROW_SIZE = 12 + SEPARATOR;
+	private static final int MARKER_SIZE = 47 + SEPARATOR;
+	
+	private interface Renderer {
+		void render(MPSWriter MPS, int item) throws IOException;
+	}
+	
+	private Problem problem;
+	private FileChannel channel;
+	private List<Callable<Void>> tasks;
+	
+	private ParallelMPSWriter(Problem problem, FileChannel channel) {
+		
+		this.problem = problem;
+		this.channel = channel;
+		this.tasks = new ArrayList<>();
+	}
+	
+	/**
+	 * Writes the MPS file of a Problem to a file, creating or
+	 * truncating it, with the tasks run in a fork-join pool
+	 *
+	 * @param	problem	The LP problem from which to generate the MPS file
+	 * @param	path	Path of the MPS file
+	 * @param	pool	Pool in which to render the blocks of the file
+	 * @throws	IOException	If an I/O error occurs
+	 * @since	2.1.0
+	 */
+	static void write(Problem problem, Path path, ForkJoinPool pool) throws IOException {
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			
+			new ParallelMPSWriter(problem, channel).write(pool);
+		}
+	}
+	
+	private void write(ForkJoinPool pool) throws IOException {
+		
+		VariableTable variables = problem.getVariables();
+		int numColumns = variables.size();
+		SparseMatrix matrix = problem.getColumnMatrix();
+		int numRows = problem.getRowTypes().length;
+		
+		int numIntegers = variables.getIntegers().get(0, numColumns).cardinality();
+		// Integer columns are written first, inside the markers
+		int order[] = new int[numColumns];
+		for(int x = 0, i = 0, k = numIntegers; x < numColumns; x++) {
+			if(variables.isInteger(x)) order[i++] = x;
+			else order[k++] = x;
+		}
+		
+		int position[] = new int[numColumns];
+		for(int k = 0; k < order.length; k++) {
+			position[order[k]] = k;
+		}
+		
+		long columnSizes[] = new long[numColumns]; // In file order
+		long rhsSizes[] = new long[numRows];
+		long rangeSizes[] = new long[numRows];
+		long boundSizes[] = new long[numColumns];
+		pool.submit(() -> {
+			IntStream.range(0, numColumns).parallel().forEach(x -> {
+				columnSizes[position[x]] = MPSWriter.columnSize(variables.getObjCoeffs()[x], matrix.getValues(), matrix.getStarts()[x], matrix.getStarts()[x+1]);
+				boundSizes[x] = MPSWriter.boundsSize(variables.isInteger(x), variables.getLowerBounds()[x], variables.getUpperBounds()[x]);
+			});
+			IntStream.range(0, numRows).parallel().forEach(c -> {
+				rhsSizes[c] = MPSWriter.rhsSize(problem.getFreeTerms()[c]);
+				rangeSizes[c] = MPSWriter.rangeSize(problem.getRanges()[c]);
+			});
+		}).join();
+		
+		boolean marker = false;
+		for(int k = 0; k < numIntegers; k++) {
+			marker |= columnSizes[k] > 0;
+		}
+		
+		long offset = 0;
+		offset = schedule(offset, new long[] {HEADER_SIZE}, (MPS, item) -> MPS.header());
+		offset = schedule(offset, fixed(numRows, ROW_SIZE), (MPS, c) -> MPS.row(problem.getRowTypes()[c], c));
+		offset = schedule(offset, new long[] {SECTION_SIZE}, (MPS, item) -> MPS.section(MPSWriter.COLUMNS));
+		if(marker) {
+			offset = schedule(offset, new long[] {MARKER_SIZE}, (MPS, item) -> MPS.marker(true));
+		}
+		offset = schedule(offset, columnSizes, 0, numIntegers, (MPS, k) -> column(MPS, matrix, order[k]));
+		if(marker) {
+			offset = schedule(offset, new long[] {MARKER_SIZE}, (MPS, item) -> MPS.marker(false));
+		}
+		offset = schedule(offset, columnSizes, numIntegers, numColumns, (MPS, k) -> column(MPS, matrix, order[k]));
+		offset = schedule(offset, new long[] {SECTION_SIZE}, (MPS, item) -> MPS.section(MPSWriter.RHS));
+		offset = schedule(offset, rhsSizes, (MPS, c) -> MPS.rhs(c, problem.getFreeTerms()[c]));
+		if(problem.hasRanges()) {
+			offset = schedule(offset, new long[] {SECTION_SIZE}, (MPS, item) -> MPS.section(MPSWriter.RANGES));
+			offset = schedule(offset, rangeSizes, (MPS, c) -> MPS.range(c, problem.getRanges()[c]));
+		}
+		offset = schedule(offset, new long[] {SECTION_SIZE}, (MPS, item) -> MPS.section(MPSWriter.BOUNDS));
+		offset = schedule(offset, boundSizes, (MPS, x) -> MPS.bounds(x, variables.isInteger(x), variables.getLowerBounds()[x], variables.getUpperBounds()[x]));
+		offset = schedule(offset, new long[] {MPSWriter.ENDATA.length()}, (MPS, item) -> MPS.end());
+		
+		if(offset > 0) {
+			channel.write(ByteBuffer.allocate(1), offset - 1);
+		}
+		
+		for(Future<Void> task : pool.invokeAll(tasks)) {
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				} else if(e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+		}
+	}
+	
+	private void column(MPSWriter MPS, SparseMatrix matrix, int x) throws IOException {
+		
+		MPS.column(x, problem.getVariables().getObjCoeffs()[x], matrix.getIndices(), matrix.getValues(), matrix.getStarts()[x], matrix.getStarts()[x+1]);
+	}
+	
+	private static long[] fixed(int count, long size) {
+		
+		long sizes[] = new long[count];
+		for(int i = 0; i < count; i++) {
+			sizes[i] = size;
+		}
+		
+		return sizes;
+	}
+	
+	private long schedule(long offset, long sizes[], Renderer renderer) {
+		
+		return schedule(offset, sizes, 0, sizes.length, renderer);
+	}
+	
+	/*
+	 * Splits the items of a part of the file, starting at the given offset,
+	 * in blocks of about BLOCK_SIZE bytes, and returns the offset after them
+	 */
+	private long schedule(long offset, long sizes[], int from, int to, Renderer renderer) {
+		
+		int first = from;
+		long start = offset;
+		for(int item = from; item < to; item++) {
+			offset += sizes[item];
+			if(offset - start >= BLOCK_SIZE || item == to - 1) {
+				int firstItem = first, lastItem = item + 1;
+				long position = start, length = offset - start;
+				tasks.add(() -> {
+					render(position, length, renderer, firstItem, lastItem);
+					return null;
+				});
+				first = lastItem;
+				start = offset;
+			}
+		}
+		
+		return offset;
+	}
+	
+	private void render(long position, long length, Renderer renderer, int from, int to) throws IOException {
+		
+		if(length == 0) {
+			return;
+		}
+		
+		MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+		MPSWriter MPS = new MPSWriter(new BufferOutputStream(region), (int) Math.min(length, 1 << 16));
+		for(int item = from; item < to; item++) {
+			renderer.render(MPS, item);
+		}
+		MPS.flush();
+		
+		if(region.hasRemaining()) {
+			throw new IllegalStateException("The rendered block is shorter than its computed size");
+		}
+	}
+	
+	/*
+	 * Writes into a mapped region of the file
+	 */
+	private static class BufferOutputStream extends OutputStream {
+		
+		private ByteBuffer buffer;
+		
+		private BufferOutputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public void write(int b) {
+			buffer.put((byte) b);
+		}
+		
+		@Override
+		public void write(byte b[], int off, int len) {
+			buffer.put(b, off, len);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -20,13 +20,47 @@ package dev.irzinfante.fixedmps;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
 import org.junit.Test;
 
+import dev.irzinfante.fixedmps.constant.Section;
+
+import dev.irzinfante.fixedmps.core.Constraint;
+import dev.irzinfante.fixedmps.core.DecomposedProblem;
+import dev.irzinfante.fixedmps.core.OffHeapProblem;
 import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.Variable;
+import dev.irzinfante.fixedmps.core.VariableTable;
 import dev.irzinfante.fixedmps.core.Constraint.ConstraintBuilder;
+import dev.irzinfante.fixedmps.core.OffHeapProblem.OffHeapProblemBuilder;
 import dev.irzinfante.fixedmps.core.Problem.ProblemBuilder;
 import dev.irzinfante.fixedmps.core.Variable.VarBuilder;
+import dev.irzinfante.fixedmps.util.BatchStats;
+import dev.irzinfante.fixedmps.util.EmissionStats;
+import dev.irzinfante.fixedmps.util.ExternalProblemBuilder;
+import dev.irzinfante.fixedmps.util.IncrementalMPSRenderer;
+import dev.irzinfante.fixedmps.util.MPSCache;
 import dev.irzinfante.fixedmps.util.MPSUtil;
+import dev.irzinfante.fixedmps.util.ParallelGzipOutputStream;
+import dev.irzinfante.fixedmps.util.BatchMPSWriter.BatchMPSWriterBuilder;
 
 public class IntegrationsTests {
 	
@@ -51,21 +85,655 @@ public class IntegrationsTests {
 			" L  C0000002",
 			"COLUMNS       ",
 			"    INT1      'MARKER'                 'INTORG'",
-			"    X0000001  C0000002  -8.00000e+00   C0000001  -2.00000e+00",
-			"    X0000001  OBJ       -1.00000e+00",
-			"    X0000002  C0000002  +1.00000e+01   C0000001  +2.00000e+00",
-			"    X0000002  OBJ       -1.00000e+00",
+			"    X0000001  OBJ       -1.00000e+00   C0000001  -2.00000e+00",
+			"    X0000001  C0000002  -8.00000e+00",
+			"    X0000002  OBJ       -1.00000e+00   C0000001  +2.00000e+00",
+			"    X0000002  C0000002  +1.00000e+01",
 			"    INT1END   'MARKER'                 'INTEND'",
 			"RHS           ",
 			"    RHS1      C0000001  +1.00000e+00",
 			"    RHS1      C0000002  +1.30000e+01",
 			"BOUNDS        ",
-			" UP BND1      X0000001  +1.00000e+10",
-			" UP BND1      X0000002  +1.00000e+10",
+			" PL BND1      X0000001",
+			" PL BND1      X0000002",
 			"ENDATA"
 		);
 		
 		assertEquals(expectedMPS, resultingMPS);
 	}
 	
-}
+	@Test
+	public void streamingTest() throws IOException {
+		Problem lp = new ProblemBuilder(
+			
+		    new VarBuilder(-1).lowerBound(-5).integer().build(),
+		    new VarBuilder(2).upperBound(8).build(),
+		    new VarBuilder().binary()
+		    
+		)
+		.addConstraint(new ConstraintBuilder(1, 1, 1).lessThan(10))
+		.addConstraint(new ConstraintBuilder(0, 3).equalTo(4))
+		.build();
+		
+		String expectedMPS = MPSUtil.obtainMPSfile(lp);
+		
+		StringWriter writer = new StringWriter();
+		MPSUtil.writeMPS(lp, writer);
+		assertEquals(expectedMPS, writer.toString());
+		
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		MPSUtil.writeMPS(lp, stream);
+		assertEquals(expectedMPS, stream.toString(StandardCharsets.US_ASCII));
+		
+		Path file = Files.createTempFile("fixedmps", ".mps");
+		try {
+			MPSUtil.writeMPS(lp, file);
+			assertEquals(expectedMPS, Files.readString(file, StandardCharsets.US_ASCII));
+			
+			MPSUtil.writeMPSParallel(lp, file);
+			assertEquals(expectedMPS, Files.readString(file, StandardCharsets.US_ASCII));
+			
+			MPSUtil.writeMPSGzip(lp, file);
+			try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+				assertEquals(expectedMPS, new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void sparseTest() {
+		Problem dense = new ProblemBuilder(
+			
+		    new VarBuilder(-1).lowerBound(0).upperBound(Double.MAX_VALUE).integer().build(),
+		    new VarBuilder(-1).lowerBound(0).upperBound(Double.MAX_VALUE).integer().build()
+		    
+		)
+		.addConstraint(new ConstraintBuilder(-2,  2).greaterThan(1))
+		.addConstraint(new ConstraintBuilder(-8, 10).lessThan(13))
+		.build();
+		
+		Problem sparse = new ProblemBuilder(
+			
+		    new VarBuilder(-1).lowerBound(0).upperBound(Double.MAX_VALUE).integer().build(),
+		    new VarBuilder(-1).lowerBound(0).upperBound(Double.MAX_VALUE).integer().build()
+		    
+		)
+		.addConstraint(new ConstraintBuilder(new int[] {1, 0}, new double[] {2, -2}).greaterThan(1))
+		.addConstraint(new ConstraintBuilder(new int[] {0, 1, 2}, new double[] {-8, 10, 4}).lessThan(13))
+		.build();
+		
+		assertEquals(MPSUtil.obtainMPSfile(dense), MPSUtil.obtainMPSfile(sparse));
+	}
+	
+	@Test
+	public void formattingTest() {
+		double values[] = {1.000005, -0.1234565, 999999.5, 9.9999949999, 123456.5, 3.14159265, -2.5e-7, 1e-12, -1e12, 7e9};
+		
+		Variable variables[] = new Variable[values.length];
+		for(int x = 0; x < values.length; x++) {
+			variables[x] = new VarBuilder(values[x]).build();
+		}
+		String MPS = MPSUtil.obtainMPSfile(new ProblemBuilder(variables).build());
+		
+		for(int x = 0; x < values.length; x++) {
+			double expected = Math.max(Math.min(Math.abs(values[x]), 1e10), 1e-10) * Math.signum(values[x]);
+			assertTrue(MPS.contains(String.format(Locale.ROOT, "    X%07d  OBJ       %+.5e%n", x+1, expected)));
+		}
+	}
+	
+	@Test
+	public void readTest() throws IOException {
+		Problem lp = new ProblemBuilder(
+			
+		    new VarBuilder(-1).lowerBound(-5).integer().build(),
+		    new VarBuilder(1).binary(),
+		    new VarBuilder(2.5).upperBound(8).build()
+		    
+		)
+		.addConstraint(new ConstraintBuilder(1, 1, 1).lessThan(10))
+		.addConstraint(new ConstraintBuilder(0, -1.25, 3).greaterThan(-4))
+		.addConstraint(new ConstraintBuilder(7).equalTo(0))
+		.build();
+		
+		Path file = Files.createTempFile("fixedmps", ".mps");
+		try {
+			MPSUtil.writeMPS(lp, file);
+			assertEquals(MPSUtil.obtainMPSfile(lp), MPSUtil.obtainMPSfile(MPSUtil.readMPS(file)));
+			
+			Files.writeString(file, String.join("\n",
+				"* Problem written by hand",
+				"NAME          HAND",
+				"ROWS",
+				" N  COST",
+				" N  FREE",
+				" L  LIM1",
+				" E  MYEQN",
+				"COLUMNS",
+				"    X1        COST      1.0          LIM1      1.0",
+				"    X1        FREE      3.0",
+				"    MARKER    'MARKER'                 'INTORG'",
+				"    X2        COST      -2E0         MYEQN     -1",
+				"    MARKER    'MARKER'                 'INTEND'",
+				"RHS",
+				"    RHS       LIM1      4            MYEQN     7.5",
+				"BOUNDS",
+				" MI BOUND     X1",
+				" UP BOUND     X2        4",
+				"ENDATA",
+				""
+			));
+			Problem read = MPSUtil.readMPS(file);
+			assertEquals(2, read.getColumns().length);
+			assertEquals(1, read.getColumns()[0].getObjCoeff(), 0);
+			assertEquals(-Double.MAX_VALUE, read.getColumns()[0].getLowerBound(), 0);
+			assertFalse(read.getColumns()[0].isInteger());
+			assertEquals(-2, read.getColumns()[1].getObjCoeff(), 0);
+			assertEquals(4, read.getColumns()[1].getUpperBound(), 0);
+			assertTrue(read.getColumns()[1].isInteger());
+			assertArrayEquals(new double[] {1, 0}, read.getRows()[0].getCoeffs(), 0);
+			assertArrayEquals(new double[] {0, -1}, read.getRows()[1].getCoeffs(), 0);
+			assertArrayEquals(new double[] {4, 7.5}, read.getFreeTerms(), 0);
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void externalTest() throws IOException {
+		Variable variables[] = new Variable[50];
+		for(int x = 0; x < variables.length; x++) {
+			VarBuilder builder = new VarBuilder(x % 3 - 1).upperBound(x % 7 == 0 ? Double.MAX_VALUE : x);
+			variables[x] = x % 2 == 0 ? builder.integer().build() : builder.build();
+		}
+		
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		try (ExternalProblemBuilder external = new ExternalProblemBuilder(0, variables)) {
+			for(int c = 0; c < 500; c++) {
+				int indices[] = {c % 50, (7 * c) % 50, (13 * c + 5) % 50};
+				double values[] = {1, -c, 0.5 * c};
+				Constraint constraint = new ConstraintBuilder(indices, values).lessThan(c);
+				builder.addConstraint(constraint);
+				external.addConstraint(constraint);
+			}
+			
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			external.writeMPS(stream);
+			assertEquals(MPSUtil.obtainMPSfile(builder.build()), stream.toString(StandardCharsets.US_ASCII));
+		}
+	}
+	
+	@Test
+	public void externalManyRunsTest() throws IOException {
+		Variable variables[] = new Variable[300];
+		for(int x = 0; x < variables.length; x++) {
+			variables[x] = new VarBuilder(x % 5 - 2).upperBound(x + 1).build();
+		}
+		
+		// 90,000 nonzeros spill to about 90 runs of 1,024 entries
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		try (ExternalProblemBuilder external = new ExternalProblemBuilder(0, variables)) {
+			for(int c = 0; c < 300; c++) {
+				double coeffs[] = new double[variables.length];
+				for(int x = 0; x < coeffs.length; x++) {
+					coeffs[x] = (c * 31 + x * 17) % 97 + 1;
+				}
+				Constraint constraint = new ConstraintBuilder(coeffs).lessThan(c);
+				builder.addConstraint(constraint);
+				external.addConstraint(constraint);
+			}
+			
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			external.writeMPS(stream);
+			assertEquals(MPSUtil.obtainMPSfile(builder.build()), stream.toString(StandardCharsets.US_ASCII));
+		}
+	}
+	
+	@Test
+	public void offHeapTest() throws IOException {
+		Variable variables[] = new Variable[50];
+		for(int x = 0; x < variables.length; x++) {
+			VarBuilder builder = new VarBuilder(x % 3 - 1).lowerBound(x % 5 == 0 ? -x : 0);
+			variables[x] = x % 4 == 0 ? builder.integer().upperBound(x).build() : builder.build();
+		}
+		
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		OffHeapProblemBuilder offHeap = new OffHeapProblemBuilder(variables);
+		for(int c = 0; c < 500; c++) {
+			int indices[] = {c % 50, (7 * c) % 50, (11 * c + 3) % 50};
+			double values[] = {-1, c, 0.25 * c};
+			ConstraintBuilder constraintBuilder = new ConstraintBuilder(indices, values);
+			Constraint constraint = c % 7 == 0 ? constraintBuilder.between(-c, c + 1) : constraintBuilder.greaterThan(-c);
+			builder.addConstraint(constraint);
+			offHeap.addConstraint(constraint);
+		}
+		String expected = MPSUtil.obtainMPSfile(builder.build());
+		assertTrue(expected.contains("RANGES"));
+		
+		Path file = Files.createTempFile("fixedmps", ".bin");
+		try {
+			try (OffHeapProblem problem = offHeap.build(file)) {
+				ByteArrayOutputStream stream = new ByteArrayOutputStream();
+				MPSUtil.writeMPS(problem, stream);
+				assertEquals(expected, stream.toString(StandardCharsets.US_ASCII));
+			}
+			try (OffHeapProblem problem = OffHeapProblem.open(file)) {
+				ByteArrayOutputStream stream = new ByteArrayOutputStream();
+				MPSUtil.writeMPS(problem, stream);
+				assertEquals(expected, stream.toString(StandardCharsets.US_ASCII));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void incrementalTest() {
+		Variable variables[] = new Variable[20];
+		for(int x = 0; x < variables.length; x++) {
+			VarBuilder builder = new VarBuilder(x % 3).upperBound(x + 1);
+			variables[x] = x % 5 == 0 ? builder.integer().build() : builder.build();
+		}
+		
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		for(int c = 0; c < 30; c++) {
+			builder.addConstraint(new ConstraintBuilder(new int[] {c % 20, (3 * c) % 20}, new double[] {1, c}).lessThan(c));
+		}
+		Problem problem = builder.build();
+		
+		IncrementalMPSRenderer renderer = new IncrementalMPSRenderer(problem);
+		assertEquals(MPSUtil.obtainMPSfile(problem), renderer.obtainMPSfile());
+		
+		renderer.setObjCoeff(0, 2.5).setObjCoeff(1, 0).setUpperBound(7, Double.MAX_VALUE).setFreeTerm(4, -1e12);
+		variables[0] = new VarBuilder(2.5).upperBound(1).integer().build();
+		variables[1] = new VarBuilder(0).upperBound(2).build();
+		variables[7] = new VarBuilder(1).build();
+		builder = new ProblemBuilder(variables);
+		for(int c = 0; c < 30; c++) {
+			builder.addConstraint(new ConstraintBuilder(new int[] {c % 20, (3 * c) % 20}, new double[] {1, c}).lessThan(c == 4 ? -1e12 : c));
+		}
+		Problem changed = builder.build();
+		assertEquals(MPSUtil.obtainMPSfile(changed), renderer.obtainMPSfile());
+		
+		assertEquals(MPSUtil.obtainMPSfile(problem), renderer.update(problem).obtainMPSfile());
+	}
+	
+	@Test
+	public void gzipTest() throws IOException {
+		byte data[] = new byte[5 << 20];
+		for(int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 61 == 0 ? '\n' : 'A' + i % 23);
+		}
+		
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try (OutputStream out = new ParallelGzipOutputStream(stream, pool, 1)) {
+			out.write(data, 0, 1000);
+			out.write(data[1000]);
+			out.write(data, 1001, data.length - 1001);
+		} finally {
+			pool.shutdown();
+		}
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(stream.toByteArray()))) {
+			assertArrayEquals(data, in.readAllBytes());
+		}
+		
+		stream.reset();
+		new ParallelGzipOutputStream(stream).close();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(stream.toByteArray()))) {
+			assertEquals(0, in.readAllBytes().length);
+		}
+	}
+	
+	@Test
+	public void cacheTest() throws IOException {
+		Problem problems[] = new Problem[3];
+		for(int i = 0; i < problems.length; i++) {
+			problems[i] = new ProblemBuilder(new VarBuilder(i + 1).build(), new VarBuilder(1).integer().build())
+				.addConstraint(new ConstraintBuilder(1, 2).lessThan(10))
+				.build();
+		}
+		Problem copy = new ProblemBuilder(new VarBuilder(1).build(), new VarBuilder(1).integer().build())
+			.addConstraint(new ConstraintBuilder(new int[] {1, 0}, new double[] {2, 1}).lessThan(10))
+			.build();
+		assertEquals(MPSCache.fingerprint(problems[0]), MPSCache.fingerprint(copy));
+		assertNotEquals(MPSCache.fingerprint(problems[0]), MPSCache.fingerprint(problems[1]));
+		
+		int size = MPSUtil.obtainMPSfile(problems[0]).length();
+		Path directory = Files.createTempDirectory("fixedmps");
+		try {
+			MPSCache cache = new MPSCache(2 * size, directory, 3 * size);
+			assertEquals(MPSUtil.obtainMPSfile(problems[0]), cache.obtainMPSfile(problems[0]));
+			assertEquals(MPSUtil.obtainMPSfile(problems[0]), cache.obtainMPSfile(copy));
+			assertEquals(1, cache.getMisses());
+			assertEquals(1, cache.getHits());
+			
+			cache.obtainMPSfile(problems[1]);
+			cache.obtainMPSfile(problems[2]);
+			assertEquals(1, cache.getEvictions());
+			
+			// Evicted from memory, but still in the directory
+			assertEquals(MPSUtil.obtainMPSfile(problems[0]), cache.obtainMPSfile(problems[0]));
+			assertEquals(2, cache.getHits());
+			
+			Path path = new MPSCache(0, directory, 3 * size).obtainMPSpath(copy);
+			assertEquals(MPSUtil.obtainMPSfile(problems[0]), Files.readString(path, StandardCharsets.US_ASCII));
+			
+			// Only files named by a fingerprint belong to the cache
+			Path own = directory.resolve("problem.mps");
+			Path ownTemporary = directory.resolve("problem.tmp");
+			Path stale = directory.resolve(MPSCache.fingerprint(problems[1]) + "123.tmp");
+			Files.writeString(own, "NAME");
+			Files.writeString(ownTemporary, "NAME");
+			Files.writeString(stale, "NAME");
+			new MPSCache(0, directory, 0);
+			assertTrue(Files.exists(own));
+			assertTrue(Files.exists(ownTemporary));
+			assertFalse(Files.exists(stale));
+			assertFalse(Files.exists(path));
+		} finally {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for(Path file : files) Files.delete(file);
+			}
+			Files.delete(directory);
+		}
+	}
+	
+	@Test
+	public void batchTest() throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("fixedmps");
+		try {
+			List<Map.Entry<Problem, Path>> items = new ArrayList<>();
+			for(int i = 0; i < 50; i++) {
+				Problem problem = new ProblemBuilder(new VarBuilder(i).build(), new VarBuilder(-i).integer().build())
+					.addConstraint(new ConstraintBuilder(1, i).lessThan(i))
+					.build();
+				items.add(Map.entry(problem, directory.resolve(i + ".mps")));
+			}
+			items.add(Map.entry(items.get(0).getKey(), directory.resolve("missing").resolve("0.mps")));
+			items.add(new AbstractMap.SimpleEntry<>(items.get(0).getKey(), null));
+			// Fails once its file has been created
+			Problem broken = new ProblemBuilder(new VarBuilder(1).build())
+				.addConstraint(new ConstraintBuilder(1).lessThan(1))
+				.build();
+			broken.getRowTypes()[0] = null;
+			items.add(Map.entry(broken, directory.resolve("broken.mps")));
+			
+			BatchStats stats = new BatchMPSWriterBuilder().concurrency(4).memoryBudget(1 << 20).build().write(items);
+			
+			assertEquals(53, stats.getItems());
+			assertEquals(50, stats.getSucceeded());
+			assertEquals(3, stats.getFailed());
+			assertTrue(stats.getErrors().get(directory.resolve("broken.mps")) instanceof NullPointerException);
+			assertFalse(Files.exists(directory.resolve("broken.mps")));
+			assertTrue(stats.getErrors().get(directory.resolve("missing").resolve("0.mps")) instanceof IOException);
+			assertTrue(stats.getErrors().get(null) instanceof IllegalArgumentException);
+			long bytes = 0;
+			for(int i = 0; i < 50; i++) {
+				String file = Files.readString(items.get(i).getValue(), StandardCharsets.US_ASCII);
+				assertEquals(MPSUtil.obtainMPSfile(items.get(i).getKey()), file);
+				bytes += file.length();
+			}
+			assertEquals(bytes, stats.getBytes());
+		} finally {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for(Path file : files) Files.delete(file);
+			}
+			Files.delete(directory);
+		}
+	}
+	
+	@Test
+	public void statsTest() throws IOException {
+		Problem problem = new ProblemBuilder(
+			new VarBuilder(1e12).build(),
+			new VarBuilder(2).upperBound(3).integer().build(),
+			new VarBuilder().lowerBound(-1e-12).build()
+		)
+		.addConstraint(new ConstraintBuilder(1, 1, 1).lessThan(1e11))
+		.addConstraint(new ConstraintBuilder(0, 2e-11, 1).greaterThan(0))
+		.build();
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EmissionStats stats = MPSUtil.writeMPSWithStats(problem, out);
+		
+		assertEquals(MPSUtil.obtainMPSfile(problem), out.toString(StandardCharsets.US_ASCII));
+		assertEquals(2, stats.getRows());
+		assertEquals(3, stats.getColumns());
+		assertEquals(5, stats.getNonzeros());
+		assertEquals(out.size(), stats.getBytes());
+		assertEquals(stats.getBytes(), stats.getBytes(Section.ROWS) + stats.getBytes(Section.COLUMNS)
+			+ stats.getBytes(Section.RHS) + stats.getBytes(Section.BOUNDS));
+		assertTrue(out.toString(StandardCharsets.US_ASCII).startsWith("RHS", (int) (stats.getBytes(Section.ROWS) + stats.getBytes(Section.COLUMNS))));
+		assertEquals(2, stats.getClampedAbove());
+		assertEquals(2, stats.getClampedBelow());
+		assertTrue(stats.getElapsedNanos() >= stats.getElapsedNanos(Section.COLUMNS));
+	}
+	
+	@Test
+	public void snapshotTest() throws IOException {
+		Variable variables[] = new Variable[300];
+		for(int x = 0; x < variables.length; x++) {
+			VarBuilder builder = new VarBuilder(x % 7 - 3).upperBound(x % 3 == 0 ? 10 : Double.MAX_VALUE);
+			variables[x] = x % 5 == 0 ? builder.integer().build() : builder.build();
+		}
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		for(int c = 0; c < 1000; c++) {
+			int indices[] = {c % 300, (13 * c) % 300, (17 * c + 5) % 300};
+			double values[] = {1, -c, 0.5 * c};
+			ConstraintBuilder constraintBuilder = new ConstraintBuilder(indices, values);
+			builder.addConstraint(c % 9 == 0 ? constraintBuilder.between(c - 5, c) : constraintBuilder.lessThan(c));
+		}
+		Problem problem = builder.build();
+		String expected = MPSUtil.obtainMPSfile(problem);
+		assertTrue(expected.contains("RANGES"));
+		
+		Path file = Files.createTempFile("fixedmps", ".bin");
+		Path bigFile = Files.createTempFile("fixedmps", ".bin");
+		Path oldFile = Files.createTempFile("fixedmps", ".bin");
+		try {
+			OffHeapProblem.save(problem, file);
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			MPSUtil.convertSnapshot(file, stream);
+			assertEquals(expected, stream.toString(StandardCharsets.US_ASCII));
+			
+			try (OffHeapProblem reloaded = OffHeapProblem.open(file)) {
+				assertEquals(problem.getMatrix().getNonzeros(), reloaded.getNonzeros());
+				assertArrayEquals(problem.getVariables().getUpperBounds(), reloaded.getVariables().getUpperBounds(), 0);
+				assertArrayEquals(problem.getRanges(), reloaded.getRanges(), 0);
+				
+				EmissionStats heapStats = MPSUtil.writeMPSWithStats(problem, new ByteArrayOutputStream());
+				EmissionStats stats = MPSUtil.writeMPSWithStats(reloaded, new ByteArrayOutputStream());
+				assertEquals(expected.length(), stats.getBytes());
+				assertEquals(heapStats.getBytes(Section.COLUMNS), stats.getBytes(Section.COLUMNS));
+				assertEquals(heapStats.getClampedAbove(), stats.getClampedAbove());
+				assertEquals(heapStats.getClampedBelow(), stats.getClampedBelow());
+			}
+			
+			// Spans several blocks of the writer
+			Problem big = new ProblemBuilder(new VariableTable(new double[600000], null, null, null))
+				.addConstraint(new ConstraintBuilder(new int[] {1, 599999}, new double[] {2, 3}).equalTo(1))
+				.build();
+			OffHeapProblem.save(big, bigFile);
+			try (OffHeapProblem reloaded = OffHeapProblem.open(bigFile)) {
+				assertEquals(1, reloaded.getColumnStart(599999));
+				assertEquals(2, reloaded.getColumnStart(600000));
+				assertEquals(0, reloaded.getRow(1));
+				assertEquals(3, reloaded.getValue(1), 0);
+			}
+			
+			// Version 1 of the format has no ranges section at the end
+			Problem unranged = new ProblemBuilder(variables)
+				.addConstraint(new ConstraintBuilder(new int[] {0, 299}, new double[] {1, 2}).lessThan(3))
+				.build();
+			OffHeapProblem.save(unranged, oldFile);
+			byte bytes[] = Files.readAllBytes(oldFile);
+			bytes[8] = 1;
+			Files.write(oldFile, Arrays.copyOf(bytes, bytes.length - Double.BYTES));
+			try (OffHeapProblem reloaded = OffHeapProblem.open(oldFile)) {
+				assertFalse(reloaded.hasRanges());
+				ByteArrayOutputStream oldStream = new ByteArrayOutputStream();
+				MPSUtil.writeMPS(reloaded, oldStream);
+				assertEquals(MPSUtil.obtainMPSfile(unranged), oldStream.toString(StandardCharsets.US_ASCII));
+			}
+		} finally {
+			Files.delete(file);
+			Files.delete(bigFile);
+			Files.delete(oldFile);
+		}
+	}
+	
+	@Test
+	public void decomposeTest() throws IOException, InterruptedException {
+		Problem problem = new ProblemBuilder(
+			new VarBuilder(1).build(),
+			new VarBuilder(2).build(),
+			new VarBuilder(3).build(),
+			new VarBuilder(4).integer().build(),
+			new VarBuilder(5).build()
+		)
+		.addConstraint(new ConstraintBuilder(0, 1, 0, 1).lessThan(1))
+		.addConstraint(new ConstraintBuilder(1, 0, 1).lessThan(2))
+		.addConstraint(new ConstraintBuilder().lessThan(3))
+		.addConstraint(new ConstraintBuilder(1).greaterThan(4))
+		.build();
+		
+		DecomposedProblem decomposed = DecomposedProblem.decompose(problem);
+		Problem blocks[] = decomposed.getProblems();
+		
+		assertEquals(3, blocks.length);
+		assertArrayEquals(new int[] {0, 2}, decomposed.getColumnMappings()[0]);
+		assertArrayEquals(new int[] {1, 3}, decomposed.getColumnMappings()[1]);
+		assertArrayEquals(new int[] {4}, decomposed.getColumnMappings()[2]);
+		assertArrayEquals(new int[] {1, 3}, decomposed.getRowMappings()[0]);
+		assertArrayEquals(new int[] {0}, decomposed.getRowMappings()[1]);
+		assertArrayEquals(new int[] {2}, decomposed.getRowMappings()[2]);
+		assertTrue(blocks[1].getVariables().isInteger(1));
+		assertArrayEquals(new double[] {1, 2, 3, 4, 5},
+			decomposed.recompose(new double[][] {{1, 3}, {2, 4}, {5}}), 0);
+		
+		Path directory = Files.createTempDirectory("fixedmps");
+		try {
+			BatchStats stats = MPSUtil.writeMPS(decomposed, directory.resolve("blocks"));
+			assertEquals(3, stats.getSucceeded());
+			for(int b = 0; b < blocks.length; b++) {
+				Path file = directory.resolve("blocks").resolve(String.format("B%07d.mps", b + 1));
+				assertEquals(MPSUtil.obtainMPSfile(blocks[b]), Files.readString(file, StandardCharsets.US_ASCII));
+				Files.delete(file);
+			}
+			Files.delete(directory.resolve("blocks"));
+		} finally {
+			Files.delete(directory);
+		}
+	}
+	
+	@Test
+	public void rangesTest() throws IOException {
+		Problem problem = new ProblemBuilder(
+			new VarBuilder(2).integer().upperBound(5).build(),
+			new VarBuilder(1).build()
+		)
+		.addConstraint(new ConstraintBuilder(1, 1).between(2, 6))
+		.addConstraint(new ConstraintBuilder(-1, 1).between(1, 1))
+		.addConstraint(new ConstraintBuilder(3, 0).lessThan(9))
+		.build();
+		
+		assertArrayEquals(new double[] {4, 0, 0}, problem.getRanges(), 0);
+		assertThrows(IllegalArgumentException.class, () -> new ConstraintBuilder(1, 1).between(6, 2));
+		
+		String MPS = MPSUtil.obtainMPSfile(problem);
+		assertTrue(MPS.contains(String.format("RANGES        %n    RNG1      C0000001  +4.00000e+00%nBOUNDS")));
+		// Once in each section: ROWS, two columns, RHS and RANGES
+		assertEquals(5, MPS.split("C0000001", -1).length - 1);
+		assertEquals(MPS, new IncrementalMPSRenderer(problem).obtainMPSfile());
+		
+		Path file = Files.createTempFile("fixedmps", ".mps");
+		try {
+			MPSUtil.writeMPSParallel(problem, file);
+			assertEquals(MPS, Files.readString(file, StandardCharsets.US_ASCII));
+			
+			Problem read = MPSUtil.readMPS(file);
+			assertArrayEquals(problem.getRanges(), read.getRanges(), 0);
+			assertEquals(MPS, MPSUtil.obtainMPSfile(read));
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void boundTypesTest() throws IOException {
+		Problem problem = new ProblemBuilder(
+			new VarBuilder(1).integer().binary(),
+			new VarBuilder(1).integer().build(),
+			new VarBuilder(1).integer().lowerBound(-1).upperBound(1).build(),
+			new VarBuilder(1).free().build(),
+			new VarBuilder(1).noLowerBound().upperBound(4).build(),
+			new VarBuilder(1).lowerBound(3).upperBound(3).build(),
+			new VarBuilder(1).lowerBound(2).upperBound(Double.POSITIVE_INFINITY).build()
+		)
+		.addConstraint(new ConstraintBuilder(1, 1, 1, 1, 1, 1, 1).lessThan(10))
+		.build();
+		
+		String MPS = MPSUtil.obtainMPSfile(problem);
+		assertTrue(MPS.endsWith(String.join(System.lineSeparator(),
+			"BOUNDS        ",
+			" BV BND1      X0000001",
+			" PL BND1      X0000002",
+			" LO BND1      X0000003  -1.00000e+00",
+			" UP BND1      X0000003  +1.00000e+00",
+			" FR BND1      X0000004",
+			" MI BND1      X0000005",
+			" UP BND1      X0000005  +4.00000e+00",
+			" FX BND1      X0000006  +3.00000e+00",
+			" LO BND1      X0000007  +2.00000e+00",
+			"ENDATA"
+		)));
+		
+		Path file = Files.createTempFile("fixedmps", ".mps");
+		try {
+			MPSUtil.writeMPSParallel(problem, file);
+			assertEquals(MPS, Files.readString(file, StandardCharsets.US_ASCII));
+			
+			Problem read = MPSUtil.readMPS(file);
+			assertArrayEquals(problem.getVariables().getLowerBounds(), read.getVariables().getLowerBounds(), 0);
+			assertArrayEquals(problem.getVariables().getUpperBounds(), read.getVariables().getUpperBounds(), 0);
+			assertEquals(MPS, MPSUtil.obtainMPSfile(read));
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void parallelBlocksTest() throws IOException {
+		Variable variables[] = new Variable[100000];
+		for(int x = 0; x < variables.length; x++) {
+			VarBuilder builder = new VarBuilder(x % 11 - 5).upperBound(x % 3 == 0 ? x : Double.MAX_VALUE);
+			variables[x] = x % 2 == 0 ? builder.integer().build() : builder.build();
+		}
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		for(int c = 0; c < 200000; c++) {
+			int indices[] = {c % 100000, (7 * c + 1) % 100000};
+			double values[] = {0.5 * c, -c - 1};
+			ConstraintBuilder constraintBuilder = new ConstraintBuilder(indices, values);
+			builder.addConstraint(c % 5 == 0 ? constraintBuilder.between(-c, c + 1) : constraintBuilder.lessThan(c));
+		}
+		Problem problem = builder.build();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		MPSUtil.writeMPS(problem, expected);
+		
+		Path file = Files.createTempFile("fixedmps", ".mps");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			MPSUtil.writeMPSParallel(problem, file, pool);
+			byte written[] = Files.readAllBytes(file);
+			// Several blocks of 4 MiB, in the columns section and across sections
+			assertTrue(written.length > 3 * (1 << 22));
+			assertArrayEquals(expected.toByteArray(), written);
+		} finally {
+			pool.shutdown();
+			Files.delete(file);
+		}
+	}
+	
+}
\ No newline at end of file
@@ -20,13 +20,25 @@ package dev.irzinfante.fixedmps;
 
 import static org.junit.Assert.*;
 
+import java.util.BitSet;
+
 import org.junit.Test;
 
 import dev.irzinfante.fixedmps.constant.ConstraintType;
 import dev.irzinfante.fixedmps.core.Constraint;
+import dev.irzinfante.fixedmps.core.LinearExpression;
+import dev.irzinfante.fixedmps.core.OffHeapProblem;
+import dev.irzinfante.fixedmps.core.PresolvedProblem;
+import dev.irzinfante.fixedmps.core.Problem;
+import dev.irzinfante.fixedmps.core.ScaledProblem;
 import dev.irzinfante.fixedmps.core.Variable;
+import dev.irzinfante.fixedmps.core.VariableTable;
 import dev.irzinfante.fixedmps.core.Constraint.ConstraintBuilder;
+import dev.irzinfante.fixedmps.core.OffHeapProblem.OffHeapProblemBuilder;
+import dev.irzinfante.fixedmps.core.Problem.ProblemBuilder;
+import dev.irzinfante.fixedmps.core.Problem.ProblemModifier;
 import dev.irzinfante.fixedmps.core.Variable.VarBuilder;
+import dev.irzinfante.fixedmps.util.MPSUtil;
 
 public class UnitTests {
 
@@ -69,4 +81,341 @@ public class UnitTests {
 		assertEquals(ConstraintType.E, constraint3.getType());
 	}
 	
-}
+	@Test
+	public void sparseConstraintTest() {
+		Constraint constraint1 = new ConstraintBuilder(new int[] {4, 1, 4, 2}, new double[] {1, 2, 3, -2}).lessThan(5);
+		assertArrayEquals(new int[] {1, 2, 4}, constraint1.getIndices());
+		assertArrayEquals(new double[] {2, -2, 4}, constraint1.getValues(), 0);
+		assertArrayEquals(new double[] {0, 2, -2, 0, 4}, constraint1.getCoeffs(), 0);
+		assertEquals(ConstraintType.L, constraint1.getType());
+		
+		Constraint constraint2 = new ConstraintBuilder(new int[] {3, 3}, new double[] {1, -1}).equalTo(0);
+		assertEquals(0, constraint2.getIndices().length);
+		assertEquals(0, constraint2.getValues().length);
+		
+		Constraint constraint3 = new ConstraintBuilder(0, 1.5, 0, -1).greaterThan(2);
+		assertArrayEquals(new int[] {1, 3}, constraint3.getIndices());
+		assertArrayEquals(new double[] {1.5, -1}, constraint3.getValues(), 0);
+	}
+	
+	@Test
+	public void problemTest() {
+		Problem problem = new ProblemBuilder(new VarBuilder().build(), new VarBuilder().build(), new VarBuilder().build())
+			.addConstraint(new ConstraintBuilder(1, 0, 2, 7).lessThan(1))
+			.addConstraint(new ConstraintBuilder(new int[] {1, 5}, new double[] {3, 1}).equalTo(2))
+			.build();
+		
+		assertArrayEquals(new int[] {0, 2, 3}, problem.getMatrix().getStarts());
+		assertArrayEquals(new int[] {0, 2, 1}, problem.getMatrix().getIndices());
+		assertArrayEquals(new double[] {1, 2, 3}, problem.getMatrix().getValues(), 0);
+		assertArrayEquals(new ConstraintType[] {ConstraintType.L, ConstraintType.E}, problem.getRowTypes());
+		assertArrayEquals(new double[] {1, 2}, problem.getFreeTerms(), 0);
+		
+		assertArrayEquals(new double[] {1, 0, 2}, problem.getRows()[0].getCoeffs(), 0);
+		assertArrayEquals(new double[] {0, 3, 0}, problem.getRows()[1].getCoeffs(), 0);
+		
+		assertArrayEquals(new int[] {0, 1, 2, 3}, problem.getColumnMatrix().getStarts());
+		assertArrayEquals(new int[] {0, 1, 0}, problem.getColumnMatrix().getIndices());
+		assertArrayEquals(new double[] {1, 3, 2}, problem.getColumnMatrix().getValues(), 0);
+		assertEquals(2, problem.getColumnMatrix().getMinorDimension());
+	}
+	
+	@Test
+	public void variableTableTest() {
+		BitSet integers = new BitSet();
+		integers.set(1);
+		VariableTable table = new VariableTable(new double[] {1, -2, 0}, null, new double[] {5, 1, Double.MAX_VALUE}, integers);
+		Problem problem = new ProblemBuilder(table)
+			.addConstraint(new ConstraintBuilder(1, 1, 1).lessThan(3))
+			.build();
+		
+		assertEquals(3, problem.getVariables().size());
+		assertArrayEquals(new double[] {0, 0, 0}, problem.getVariables().getLowerBounds(), 0);
+		
+		Variable columns[] = problem.getColumns();
+		assertEquals(-2, columns[1].getObjCoeff(), 0);
+		assertEquals(5, columns[0].getUpperBound(), 0);
+		assertTrue(columns[1].isInteger());
+		assertFalse(columns[2].isInteger());
+		
+		Problem same = new ProblemBuilder(columns)
+			.addConstraint(new ConstraintBuilder(1, 1, 1).lessThan(3))
+			.build();
+		assertEquals(MPSUtil.obtainMPSfile(same), MPSUtil.obtainMPSfile(problem));
+	}
+	
+	@Test
+	public void offHeapProblemTest() {
+		OffHeapProblem problem = new OffHeapProblemBuilder(new VarBuilder().build(), new VarBuilder().build(), new VarBuilder().build())
+			.addConstraint(new ConstraintBuilder(1, 0, 2).lessThan(1))
+			.addConstraint(new ConstraintBuilder(new int[] {1, 5}, new double[] {3, 1}).equalTo(2))
+			.build();
+		
+		assertEquals(3, problem.getNonzeros());
+		assertEquals(0, problem.getColumnStart(0));
+		assertEquals(1, problem.getColumnStart(1));
+		assertEquals(2, problem.getColumnStart(2));
+		assertEquals(3, problem.getColumnStart(3));
+		assertEquals(1, problem.getRow(1));
+		assertEquals(3, problem.getValue(1), 0);
+		assertEquals(2, problem.getValue(2), 0);
+		
+		problem.close();
+		assertThrows(IllegalStateException.class, () -> problem.getRow(0));
+	}
+	
+	@Test
+	public void namesTest() {
+		assertEquals("C0000001", MPSUtil.rowName(0));
+		assertEquals("X9999999", MPSUtil.columnName(9999998));
+		assertEquals("XA000000", MPSUtil.columnName(9999999));
+		assertEquals("CA000001", MPSUtil.rowName(10000000));
+		assertEquals("CA00000Z", MPSUtil.rowName(10000034));
+		assertEquals("CA000010", MPSUtil.rowName(10000035));
+		
+		for(int index : new int[] {0, 41, 9999999, 10000035, 123456789, Integer.MAX_VALUE - 1}) {
+			assertEquals(index, MPSUtil.rowIndex(MPSUtil.rowName(index)));
+			assertEquals(index, MPSUtil.columnIndex(MPSUtil.columnName(index)));
+		}
+		assertEquals(-1, MPSUtil.rowIndex("OBJ"));
+		assertEquals(-1, MPSUtil.rowIndex("X0000001"));
+		assertEquals(-1, MPSUtil.columnIndex("X000001"));
+		assertEquals(-1, MPSUtil.columnIndex("Xa000001"));
+	}
+	
+	@Test
+	public void presolveTest() {
+		Problem problem = new ProblemBuilder(
+			new VarBuilder(1).build(),
+			new VarBuilder(2).lowerBound(3).upperBound(3).build(),
+			new VarBuilder(-1).upperBound(10).integer().build()
+		)
+		.addConstraint(new ConstraintBuilder(1, 1, 1).lessThan(8))
+		.addConstraint(new ConstraintBuilder(0, 0, 0).lessThan(1))
+		.addConstraint(new ConstraintBuilder(0, 0, 2).lessThan(8))
+		.addConstraint(new ConstraintBuilder(0, 1, 0).equalTo(3))
+		.addConstraint(new ConstraintBuilder(1, 2, 1).greaterThan(8))
+		.addConstraint(new ConstraintBuilder(1, 0, 1).lessThan(6))
+		.addConstraint(new ConstraintBuilder(1, 5, 2).equalTo(17))
+		.build();
+		
+		PresolvedProblem presolved = PresolvedProblem.presolve(problem);
+		Problem reduced = presolved.getProblem();
+		
+		assertArrayEquals(new int[] {0, 2}, presolved.getColumnMapping());
+		assertArrayEquals(new int[] {0, 6}, presolved.getRowMapping());
+		assertEquals(6, presolved.getObjectiveOffset(), 0);
+		assertArrayEquals(new ConstraintType[] {ConstraintType.G, ConstraintType.E}, reduced.getRowTypes());
+		assertArrayEquals(new double[] {2, 2}, reduced.getFreeTerms(), 0);
+		assertArrayEquals(new double[] {3, 0}, reduced.getRanges(), 0);
+		assertArrayEquals(new double[] {4, 0}, new double[] {reduced.getVariables().getUpperBounds()[1], reduced.getVariables().getLowerBounds()[1]}, 0);
+		assertTrue(reduced.getVariables().isInteger(1));
+		
+		assertArrayEquals(new double[] {1, 3, 2}, presolved.postsolve(new double[] {1, 2}), 0);
+	}
+	
+	@Test
+	public void linearExpressionTest() {
+		ProblemBuilder builder = new ProblemBuilder(new VarBuilder(1).build());
+		int y = builder.addVariable(new VarBuilder(2).upperBound(4).build());
+		int z = builder.addVariable(new VarBuilder(-1).integer().binary());
+		assertEquals(1, y);
+		assertEquals(2, z);
+		
+		LinearExpression expression = new LinearExpression();
+		for(int k = 0; k < 100; k++) {
+			expression.add(z, 0.5).add(0, 1);
+		}
+		expression.add(y, 3).add(0, -100).addConstant(2);
+		assertEquals(3, expression.size());
+		
+		Constraint row = expression.lessThan(10);
+		assertArrayEquals(new int[] {1, 2}, row.getIndices());
+		assertArrayEquals(new double[] {3, 50}, row.getValues(), 0);
+		assertEquals(8, row.getFree(), 0);
+		assertEquals(ConstraintType.L, row.getType());
+		
+		Problem problem = builder
+			.addConstraint(row)
+			.addConstraint(new LinearExpression().add(y, -1).add(new LinearExpression().add(0, 2), 3).equalTo(1))
+			.build();
+		
+		Problem same = new ProblemBuilder(
+			new VarBuilder(1).build(),
+			new VarBuilder(2).upperBound(4).build(),
+			new VarBuilder(-1).integer().binary()
+		)
+		.addConstraint(new ConstraintBuilder(0, 3, 50).lessThan(8))
+		.addConstraint(new ConstraintBuilder(6, -1, 0).equalTo(1))
+		.build();
+		assertEquals(MPSUtil.obtainMPSfile(same), MPSUtil.obtainMPSfile(problem));
+		
+		assertThrows(IllegalArgumentException.class, () -> expression.add(-1, 1));
+	}
+	
+	@Test
+	public void bulkConstraintsTest() {
+		Variable variables[] = {new VarBuilder(1).build(), new VarBuilder(2).build(), new VarBuilder(3).build()};
+		ConstraintType rowTypes[] = {ConstraintType.L, ConstraintType.E, ConstraintType.G};
+		double freeTerms[] = {4, 5, 6};
+		
+		Problem expected = new ProblemBuilder(variables)
+			.addConstraint(new ConstraintBuilder(1, 0, 2).lessThan(4))
+			.addConstraint(new ConstraintBuilder().equalTo(5))
+			.addConstraint(new ConstraintBuilder(0, 5, -1).greaterThan(6))
+			.build();
+		String MPS = MPSUtil.obtainMPSfile(expected);
+		
+		Problem csr = new ProblemBuilder(variables)
+			.addConstraintsCSR(new int[] {0, 2, 3, 6}, new int[] {2, 0, 1, 2, 1, 1}, new double[] {2, 1, 0, -1, 2, 3}, rowTypes, freeTerms)
+			.build();
+		assertEquals(MPS, MPSUtil.obtainMPSfile(csr));
+		
+		Problem coo = new ProblemBuilder(variables)
+			.addConstraintsCOO(new int[] {2, 0, 2, 0, 1}, new int[] {1, 2, 2, 0, 1}, new double[] {5, 2, -1, 1, 0}, rowTypes, freeTerms)
+			.build();
+		assertEquals(MPS, MPSUtil.obtainMPSfile(coo));
+		
+		int starts[] = {0, 2, 2, 4};
+		int indices[] = {0, 2, 1, 2};
+		double values[] = {1, 2, 5, -1};
+		Problem owned = new ProblemBuilder(variables)
+			.addConstraintsCSR(starts, indices, values, rowTypes, freeTerms, true)
+			.build();
+		assertSame(indices, owned.getMatrix().getIndices());
+		assertSame(values, owned.getMatrix().getValues());
+		assertEquals(MPS, MPSUtil.obtainMPSfile(owned));
+		
+		assertThrows(IllegalArgumentException.class, () -> new ProblemBuilder(variables)
+			.addConstraintsCOO(new int[] {0}, new int[] {3}, new double[] {1}, rowTypes, freeTerms));
+		assertThrows(IllegalArgumentException.class, () -> new ProblemBuilder(variables)
+			.addConstraintsCSR(new int[] {0, 2, 1, 2}, new int[] {0, 1}, new double[] {1, 1}, rowTypes, freeTerms));
+		
+		// Invalid arrays are neither adopted nor rewritten
+		int badIndices[] = {2, 0, 1, 7};
+		double badValues[] = {1, 2, 5, -1};
+		ProblemBuilder builder = new ProblemBuilder(variables);
+		assertThrows(IllegalArgumentException.class, () -> builder
+			.addConstraintsCSR(new int[] {0, 2, 2, 4}, badIndices, badValues, rowTypes, freeTerms, true));
+		assertArrayEquals(new int[] {2, 0, 1, 7}, badIndices);
+		Problem rebuilt = builder.addConstraint(new ConstraintBuilder(1, 0, 2).lessThan(4)).build();
+		assertNotSame(badIndices, rebuilt.getMatrix().getIndices());
+		assertArrayEquals(new int[] {2, 0, 1, 7}, badIndices);
+		assertEquals(1, rebuilt.getRowTypes().length);
+	}
+	
+	@Test
+	public void scaleTest() {
+		Problem problem = new ProblemBuilder(
+			new VarBuilder(3).upperBound(8).build(),
+			new VarBuilder(1).upperBound(5).integer().build(),
+			new VarBuilder(-1).build()
+		)
+		.addConstraint(new ConstraintBuilder(1024, 0, 4096).lessThan(2048))
+		.addConstraint(new ConstraintBuilder(0.25, 4, 0).greaterThan(1))
+		.build();
+		
+		ScaledProblem scaled = ScaledProblem.scale(problem);
+		Problem reduced = scaled.getProblem();
+		double rowScales[] = scaled.getRowScales();
+		double columnScales[] = scaled.getColumnScales();
+		
+		assertEquals(1, columnScales[1], 0);
+		for(double scale : new double[] {rowScales[0], rowScales[1], columnScales[0], columnScales[2]}) {
+			assertEquals(scale, Math.scalb(1.0, Math.getExponent(scale)), 0);
+		}
+		for(int c = 0; c < 2; c++) {
+			int starts[] = problem.getMatrix().getStarts();
+			for(int k = starts[c]; k < starts[c+1]; k++) {
+				int x = problem.getMatrix().getIndices()[k];
+				assertEquals(problem.getMatrix().getValues()[k] * rowScales[c] * columnScales[x], reduced.getMatrix().getValues()[k], 0);
+			}
+			assertEquals(problem.getFreeTerms()[c] * rowScales[c], reduced.getFreeTerms()[c], 0);
+		}
+		for(double value : reduced.getMatrix().getValues()) {
+			assertTrue(Math.abs(value) >= 0.125 && Math.abs(value) <= 8);
+		}
+		assertEquals(8 / columnScales[0], reduced.getVariables().getUpperBounds()[0], 0);
+		assertEquals(5, reduced.getVariables().getUpperBounds()[1], 0);
+		assertEquals(Double.MAX_VALUE, reduced.getVariables().getUpperBounds()[2], 0);
+		assertEquals(3 * columnScales[0], reduced.getVariables().getObjCoeffs()[0], 0);
+		
+		assertArrayEquals(new double[] {2 * columnScales[0], 1, 0.5 * columnScales[2]}, scaled.unscale(new double[] {2, 1, 0.5}), 0);
+		assertArrayEquals(new double[] {rowScales[0], 2 * rowScales[1]}, scaled.unscaleDuals(new double[] {1, 2}), 0);
+	}
+	
+	@Test
+	public void modifierTest() {
+		Problem base = new ProblemBuilder(new VarBuilder(1).build(), new VarBuilder(2).upperBound(5).build())
+			.addConstraint(new ConstraintBuilder(1, 1).lessThan(4))
+			.addConstraint(new ConstraintBuilder(1, -1).greaterThan(0))
+			.build();
+		String baseMPS = MPSUtil.obtainMPSfile(base);
+		base.getColumnMatrix();
+		
+		ProblemModifier modifier = new ProblemModifier(base);
+		Problem rhs = modifier.setFreeTerm(0, 6).build();
+		Problem both = modifier.setObjCoeff(1, -2).setLowerBound(0, 1).setRowType(1, ConstraintType.E).build();
+		
+		assertEquals(baseMPS, MPSUtil.obtainMPSfile(base));
+		assertSame(base.getMatrix(), both.getMatrix());
+		assertSame(base.getColumnMatrix(), both.getColumnMatrix());
+		assertSame(base.getVariables(), rhs.getVariables());
+		assertSame(rhs.getFreeTerms(), both.getFreeTerms());
+		assertArrayEquals(new double[] {6, 0}, rhs.getFreeTerms(), 0);
+		assertArrayEquals(new ConstraintType[] {ConstraintType.L, ConstraintType.G}, rhs.getRowTypes());
+		
+		Problem expected = new ProblemBuilder(new VarBuilder(1).lowerBound(1).build(), new VarBuilder(-2).upperBound(5).build())
+			.addConstraint(new ConstraintBuilder(1, 1).lessThan(6))
+			.addConstraint(new ConstraintBuilder(1, -1).equalTo(0))
+			.build();
+		assertEquals(MPSUtil.obtainMPSfile(expected), MPSUtil.obtainMPSfile(both));
+	}
+	
+	@Test
+	public void infiniteRangeTest() {
+		Constraint below = new ConstraintBuilder(1, 1).between(Double.NEGATIVE_INFINITY, 5);
+		assertEquals(ConstraintType.L, below.getType());
+		assertEquals(5, below.getFree(), 0);
+		assertEquals(0, below.getRange(), 0);
+		
+		Constraint above = new ConstraintBuilder(1, 1).between(2, Double.MAX_VALUE);
+		assertEquals(ConstraintType.G, above.getType());
+		assertEquals(2, above.getFree(), 0);
+		assertEquals(0, above.getRange(), 0);
+		
+		Constraint expression = new LinearExpression().add(0, 1).addConstant(1).between(-Double.MAX_VALUE, 5);
+		assertEquals(ConstraintType.L, expression.getType());
+		assertEquals(4, expression.getFree(), 0);
+		assertEquals(0, expression.getRange(), 0);
+		
+		// Finite limits whose distance overflows cannot be a range
+		double extreme = Double.MAX_VALUE / 2 + Double.MAX_VALUE / 4;
+		assertThrows(IllegalArgumentException.class, () -> new ConstraintBuilder(1, 1).between(-extreme, extreme));
+		assertThrows(IllegalArgumentException.class, () -> new LinearExpression().add(0, 1).between(-extreme, extreme));
+		
+		ProblemBuilder builder = new ProblemBuilder(new VarBuilder(1).build());
+		for(int c = 0; c < 16; c++) {
+			builder.addConstraint(new ConstraintBuilder(1).lessThan(c));
+		}
+		Problem problem = builder.build();
+		builder.setRange(0, 5);
+		assertFalse(problem.hasRanges());
+		assertTrue(builder.build().hasRanges());
+	}
+	
+	@Test
+	public void modifierTransposeTest() {
+		Problem base = new ProblemBuilder(new VarBuilder(1).build(), new VarBuilder(2).build())
+			.addConstraint(new ConstraintBuilder(1, 1).lessThan(4))
+			.build();
+		
+		ProblemModifier modifier = new ProblemModifier(base);
+		Problem first = modifier.setFreeTerm(0, 5).build();
+		Problem second = new ProblemModifier(base).setFreeTerm(0, 6).build();
+		
+		assertSame(first.getColumnMatrix(), second.getColumnMatrix());
+		assertSame(base.getColumnMatrix(), first.getColumnMatrix());
+	}
+	
+}
\ No newline at end of file